@@ -311,7 +311,10 @@ public class CloudSim {
 	private static List<SimEntity> entities;
 
 	/** The future event queue. */
-	protected static FutureQueue future;
+	protected static FutureEventQueue future;
+
+	/** The type of future event queue created when the simulation is initialised. */
+	private static Class<? extends FutureEventQueue> futureQueueType = HeapFutureQueue.class;
 
 	/** The deferred event queue. */
 	protected static DeferredQueue deferred;
@@ -346,13 +349,49 @@ public class CloudSim {
 		Log.printLine("Initialising...");
 		entities = new ArrayList<SimEntity>();
 		entitiesByName = new LinkedHashMap<String, SimEntity>();
-		future = new FutureQueue();
+		future = createFutureQueue();
 		deferred = new DeferredQueue();
 		waitPredicates = new HashMap<Integer, Predicate>();
 		clock = 0;
 		running = false;
 	}
 
+	/**
+	 * Sets the future event queue implementation used by the next simulations. It has to be called
+	 * before {@link #init(int, Calendar, boolean)}.
+	 * 
+	 * @param type the future event queue class, with a public no-argument constructor
+	 */
+	public static void setFutureQueueType(Class<? extends FutureEventQueue> type) {
+		if (type == null) {
+			throw new IllegalArgumentException("Future event queue type can't be null.");
+		}
+		futureQueueType = type;
+	}
+
+	/**
+	 * Gets the future event queue implementation used by the simulations.
+	 * 
+	 * @return the future event queue class
+	 */
+	public static Class<? extends FutureEventQueue> getFutureQueueType() {
+		return futureQueueType;
+	}
+
+	/**
+	 * Creates an empty future event queue of the configured type.
+	 * 
+	 * @return the future event queue
+	 */
+	private static FutureEventQueue createFutureQueue() {
+		try {
+			return futureQueueType.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Can't create future event queue of type "
+					+ futureQueueType.getName(), e);
+		}
+	}
+
 	// The two standard predicates
 
 	/** A standard predicate that matches any event. */
@@ -523,30 +562,16 @@ public class CloudSim {
 				
 		// If there are more future events then deal with them
 		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
 			queue_empty = false;
-			SimEvent first = fit.next();
+			SimEvent first = future.poll();
 			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
 
 			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
+			SimEvent next;
+			while ((next = future.pollAt(first.eventTime())) != null) {
+				processEvent(next);
 			}
 
-			future.removeAll(toRemove);
-
 		} else {
 			queue_empty = true;
 			running = false;
@@ -605,6 +630,38 @@ public class CloudSim {
 		future.addEvent(e);
 	}
 
+	/**
+	 * Reserves serial numbers for events to be sent later with
+	 * {@link #sendReserved(int, int, double, int, Object, long)}, so that they are ordered among the
+	 * events of their time as if they were sent now.
+	 * 
+	 * @param count the number of events
+	 * @return the first reserved serial, the others follow it
+	 */
+	public static long reserveSerials(int count) {
+		return future.reserveSerials(count);
+	}
+
+	/**
+	 * Used to send an event from one entity to another at a given time, with a serial reserved by
+	 * {@link #reserveSerials(int)}.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param time the time of the event
+	 * @param tag the tag
+	 * @param data the data
+	 * @param serial the reserved serial
+	 */
+	public static void sendReserved(int src, int dest, double time, int tag, Object data, long serial) {
+		if (time < clock) {
+			throw new IllegalArgumentException("Send time can't be in the past.");
+		}
+
+		SimEvent e = new SimEvent(SimEvent.SEND, time, src, dest, tag, data);
+		future.addEvent(e, serial);
+	}
+
 	/**
 	 * Used to send an event from one entity to another, with priority in the queue.
 	 * 
@@ -647,12 +704,15 @@ public class CloudSim {
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
+		if (p == SIM_ANY) {
+			return deferred.size(d);
+		}
 		int count = 0;
 		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
+		Iterator<SimEvent> iterator = deferred.iterator(d);
 		while (iterator.hasNext()) {
 			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
+			if (p.match(event)) {
 				count++;
 			}
 		}
@@ -664,19 +724,19 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no deferred event of the entity matches
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
+		SimEvent ev;
+		Iterator<SimEvent> iterator = deferred.iterator(src);
 		while (iterator.hasNext()) {
 			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
+			if (p.match(ev)) {
 				iterator.remove();
-				break;
+				return ev;
 			}
 		}
-		return ev;
+		return null;
 	}
 
 	/**
@@ -684,39 +744,30 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no deferred event of the entity matches
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
+		SimEvent ev;
+		Iterator<SimEvent> iterator = deferred.iterator(src);
 		while (iterator.hasNext()) {
 			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
+			if (p.match(ev)) {
+				return ev;
 			}
 		}
-		return ev;
+		return null;
 	}
 
 	/**
-	 * Removes an event from the event queue.
+	 * Removes the first event scheduled by the given entity that matches a given predicate from
+	 * the future event queue.
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the cancelled event, or <tt>null</tt> if no event matches
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
-			}
-		}
-
-		return ev;
+		return future.removeFirst(src, p);
 	}
 
 	/**
@@ -728,16 +779,7 @@ public class CloudSim {
 	 * @return true, if successful
 	 */
 	public static boolean cancelAll(int src, Predicate p) {
-		SimEvent ev = null;
-		int previousSize = future.size();
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-			}
-		}
-		return previousSize < future.size();
+		return future.removeAll(src, p);
 	}
 
 	//
@@ -894,8 +936,8 @@ public class CloudSim {
 			}
 
 			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.peek().eventTime())
+							|| future.size() == 0 && pauseAt <= clock)) {
 				pauseSimulation();
 				clock = pauseAt;
 			}
@@ -8,14 +8,19 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
+ * This class implements the deferred event queue used by {@link Simulation}. The events are
+ * partitioned by destination entity: each entity has its own linked list of events, kept in
+ * temporal order, so looking up the events of an entity does not visit the events of the others.
  * 
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
@@ -24,11 +29,11 @@ import java.util.ListIterator;
  */
 public class DeferredQueue {
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** The lists of events, indexed by destination entity id. */
+	private final List<LinkedList<SimEvent>> lists = new ArrayList<LinkedList<SimEvent>>();
 
-	/** The max time. */
-	private double maxTime = -1;
+	/** The max time of the events of each destination entity. */
+	private double[] maxTimes = new double[0];
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
@@ -37,12 +42,15 @@ public class DeferredQueue {
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
+		int destination = newEvent.getDestination();
+		LinkedList<SimEvent> list = listOf(destination);
+
 		// The event has to be inserted as the last of all events
 		// with the same event_time(). Yes, this matters.
 		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
+		if (eventTime >= maxTimes[destination]) {
 			list.add(newEvent);
-			maxTime = eventTime;
+			maxTimes[destination] = eventTime;
 			return;
 		}
 
@@ -61,12 +69,73 @@ public class DeferredQueue {
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
+	 * Returns an iterator to the events in the queue for the given destination entity, in temporal
+	 * order.
+	 * 
+	 * @param destination the id of the destination entity
+	 * @return the iterator
+	 */
+	public Iterator<SimEvent> iterator(int destination) {
+		if (destination < 0 || destination >= lists.size()) {
+			return Collections.<SimEvent> emptyList().iterator();
+		}
+		return lists.get(destination).iterator();
+	}
+
+	/**
+	 * Returns an iterator to the events in the queue, grouped by destination entity and in
+	 * temporal order for each destination.
 	 * 
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		return new Iterator<SimEvent>() {
+
+			private int destination = 0;
+
+			private Iterator<SimEvent> current = Collections.<SimEvent> emptyList().iterator();
+
+			private Iterator<SimEvent> last;
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext() && destination < lists.size()) {
+					current = lists.get(destination++).iterator();
+				}
+				return current.hasNext();
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				last = current;
+				return current.next();
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				last.remove();
+				last = null;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of events in the queue for the given destination entity.
+	 * 
+	 * @param destination the id of the destination entity
+	 * @return the number of events for the destination.
+	 */
+	public int size(int destination) {
+		if (destination < 0 || destination >= lists.size()) {
+			return 0;
+		}
+		return lists.get(destination).size();
 	}
 
 	/**
@@ -75,14 +144,37 @@ public class DeferredQueue {
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		int size = 0;
+		for (LinkedList<SimEvent> list : lists) {
+			size += list.size();
+		}
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		lists.clear();
+		maxTimes = new double[0];
+	}
+
+	/**
+	 * Returns the list of events of the given destination entity, creating it if needed.
+	 * 
+	 * @param destination the id of the destination entity
+	 * @return the list of events
+	 */
+	private LinkedList<SimEvent> listOf(int destination) {
+		if (destination >= maxTimes.length) {
+			int oldLength = maxTimes.length;
+			maxTimes = Arrays.copyOf(maxTimes, Math.max(destination + 1, oldLength * 2));
+			Arrays.fill(maxTimes, oldLength, maxTimes.length, -1);
+		}
+		while (lists.size() <= destination) {
+			lists.add(new LinkedList<SimEvent>());
+		}
+		return lists.get(destination);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * The future event queue used by {@link CloudSim}. Implementations keep the events ordered by
+ * event time and, for events with the same time, by the serial number assigned on insertion.
+ *
+ * @see FutureQueue
+ * @see HeapFutureQueue
+ * @see CloudSim#setFutureQueueType(Class)
+ */
+public interface FutureEventQueue {
+
+	/**
+	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
+	 * the events in the queue.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	void addEvent(SimEvent newEvent);
+
+	/**
+	 * Add a new event to the head of the queue, i.e. before all the events with the same time.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	void addEventFirst(SimEvent newEvent);
+
+	/**
+	 * Reserves serials for events to be added later with {@link #addEvent(SimEvent, long)}, as if
+	 * that many events were added now.
+	 *
+	 * @param count the number of serials to reserve
+	 * @return the first reserved serial, the others follow it
+	 */
+	long reserveSerials(int count);
+
+	/**
+	 * Add a new event with a serial reserved by {@link #reserveSerials(int)}. Among the events with
+	 * the same time, it is placed as if it had been added when the serial was reserved.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 * @param serial the reserved serial
+	 */
+	void addEvent(SimEvent newEvent, long serial);
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent peek();
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent poll();
+
+	/**
+	 * Removes and returns the first event of the queue if it happens at the given time. Used to
+	 * drain all the events of a clock tick one by one.
+	 *
+	 * @param time the time of the current clock tick
+	 * @return the first event, or <tt>null</tt> if the queue is empty or its first event happens
+	 *         at another time
+	 */
+	SimEvent pollAt(double time);
+
+	/**
+	 * Returns an iterator over the events of the queue, in temporal order. Removing through the
+	 * iterator removes the event from the queue.
+	 *
+	 * @return the iterator
+	 */
+	Iterator<SimEvent> iterator();
+
+	/**
+	 * Returns the size of this event queue.
+	 *
+	 * @return the size
+	 */
+	int size();
+
+	/**
+	 * Removes the event from the queue.
+	 *
+	 * @param event the event
+	 * @return true, if successful
+	 */
+	boolean remove(SimEvent event);
+
+	/**
+	 * Removes all the events from the queue.
+	 *
+	 * @param events the events
+	 * @return true, if successful
+	 */
+	boolean removeAll(Collection<SimEvent> events);
+
+	/**
+	 * Removes all the events scheduled by the given entity that match the predicate. Unlike
+	 * removing through {@link #iterator()}, the events are visited in no particular order.
+	 *
+	 * @param src the id of the entity that scheduled the events
+	 * @param p the predicate
+	 * @return true, if at least one event was removed
+	 */
+	boolean removeAll(int src, Predicate p);
+
+	/**
+	 * Removes the first event, in temporal order, scheduled by the given entity that matches the
+	 * predicate.
+	 *
+	 * @param src the id of the entity that scheduled the event
+	 * @param p the predicate
+	 * @return the removed event, or <tt>null</tt> if no event matches
+	 */
+	SimEvent removeFirst(int src, Predicate p);
+
+	/**
+	 * Clears the queue.
+	 */
+	void clear();
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * Future event queue backed by an array-based 4-ary min-heap. Events are ordered exactly as in
+ * {@link FutureQueue}: by event time, then by insertion serial. Adding and polling are
+ * O(log n) and do not allocate, unlike the tree nodes of a {@link java.util.TreeSet}.
+ * <p>
+ * Events added with {@link #addEventFirst(SimEvent)} get serials below those of every regular
+ * event, in insertion order, so they are served first among the events with the same time.
+ * <p>
+ * Iterating in temporal order costs O(n log n) and removing a given event O(n). Cancellation
+ * through {@link #removeFirst(int, Predicate)} or {@link #removeAll(int, Predicate)} is a single
+ * O(n) pass.
+ *
+ * @see FutureQueue
+ */
+public class HeapFutureQueue implements FutureEventQueue {
+
+	/** The arity of the heap. */
+	private static final int D = 4;
+
+	/** The heap. */
+	private SimEvent[] heap = new SimEvent[64];
+
+	/** The number of events in the heap. */
+	private int size = 0;
+
+	/** The serial. */
+	private long serial = 0;
+
+	/** The serial of events added to the head of the queue. */
+	private long firstSerial = Long.MIN_VALUE;
+
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		newEvent.setSerial(serial++);
+		offer(newEvent);
+	}
+
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(firstSerial++);
+		offer(newEvent);
+	}
+
+	@Override
+	public long reserveSerials(int count) {
+		long first = serial;
+		serial += count;
+		return first;
+	}
+
+	@Override
+	public void addEvent(SimEvent newEvent, long serial) {
+		newEvent.setSerial(serial);
+		offer(newEvent);
+	}
+
+	@Override
+	public SimEvent peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public SimEvent poll() {
+		if (size == 0) {
+			return null;
+		}
+		return removeAt(0);
+	}
+
+	@Override
+	public SimEvent pollAt(double time) {
+		if (size == 0 || heap[0].eventTime() != time) {
+			return null;
+		}
+		return removeAt(0);
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		final SimEvent[] sorted = Arrays.copyOf(heap, size);
+		Arrays.sort(sorted);
+		return new Iterator<SimEvent>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < sorted.length;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next >= sorted.length) {
+					throw new NoSuchElementException();
+				}
+				return sorted[next++];
+			}
+
+			@Override
+			public void remove() {
+				if (next == 0 || sorted[next - 1] == null) {
+					throw new IllegalStateException();
+				}
+				HeapFutureQueue.this.remove(sorted[next - 1]);
+				sorted[next - 1] = null;
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		for (int i = 0; i < size; i++) {
+			if (heap[i] == event) {
+				removeAt(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean removeAll(Collection<SimEvent> events) {
+		boolean changed = false;
+		for (SimEvent event : events) {
+			changed |= remove(event);
+		}
+		return changed;
+	}
+
+	@Override
+	public boolean removeAll(int src, Predicate p) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			SimEvent ev = heap[i];
+			if (ev.getSource() != src || !p.match(ev)) {
+				heap[kept++] = ev;
+			}
+		}
+		if (kept == size) {
+			return false;
+		}
+		Arrays.fill(heap, kept, size, null);
+		size = kept;
+		for (int i = (size - 2) / D; i >= 0; i--) {
+			siftDown(i, heap[i]);
+		}
+		return true;
+	}
+
+	@Override
+	public SimEvent removeFirst(int src, Predicate p) {
+		int first = -1;
+		for (int i = 0; i < size; i++) {
+			SimEvent ev = heap[i];
+			if (ev.getSource() == src && (first < 0 || ev.compareTo(heap[first]) < 0) && p.match(ev)) {
+				first = i;
+			}
+		}
+		return first < 0 ? null : removeAt(first);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+	}
+
+	private void offer(SimEvent event) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		siftUp(size++, event);
+	}
+
+	private SimEvent removeAt(int index) {
+		SimEvent removed = heap[index];
+		SimEvent last = heap[--size];
+		heap[size] = null;
+		if (index < size) {
+			siftDown(index, last);
+			if (heap[index] == last) {
+				siftUp(index, last);
+			}
+		}
+		return removed;
+	}
+
+	private void siftUp(int index, SimEvent event) {
+		while (index > 0) {
+			int parent = (index - 1) / D;
+			SimEvent p = heap[parent];
+			if (event.compareTo(p) >= 0) {
+				break;
+			}
+			heap[index] = p;
+			index = parent;
+		}
+		heap[index] = event;
+	}
+
+	private void siftDown(int index, SimEvent event) {
+		while (true) {
+			int child = index * D + 1;
+			if (child >= size) {
+				break;
+			}
+			int end = Math.min(child + D, size);
+			int min = child;
+			for (int c = child + 1; c < end; c++) {
+				if (heap[c].compareTo(heap[min]) < 0) {
+					min = c;
+				}
+			}
+			if (event.compareTo(heap[min]) <= 0) {
+				break;
+			}
+			heap[index] = heap[min];
+			index = min;
+		}
+		heap[index] = event;
+	}
+
+}
@@ -1,12 +1,12 @@
 package org.fog.application;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.math3.util.Pair;
-import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.fog.application.selectivity.SelectivityModel;
 import org.fog.entities.Tuple;
 import org.fog.scheduler.TupleScheduler;
@@ -40,6 +40,17 @@ public class Application {
 	private List<AppLoop> loops;
 	
 	private Map<String, AppEdge> edgeMap;
+	
+	/**
+	 * Module name -> input tuple type -> edges on which the module emits tuples, see {@link #getOutputEdges(String, String)}
+	 */
+	private Map<String, Map<String, List<OutputEdge>>> outputEdges = new HashMap<String, Map<String, List<OutputEdge>>>();
+
+	/**
+	 * Source module -> destination module -> loops containing that edge, see {@link #getLoopEdge(String, String)}
+	 */
+	private Map<String, Map<String, LoopEdge>> loopEdges = new HashMap<String, Map<String, LoopEdge>>();
+	private int loopEdgesLoopCount = -1;
 
 	protected Map<String, List<String>> specialPlacementInfo = new HashMap<>(); // module name to placement device staring with
 
@@ -70,6 +81,7 @@ public class Application {
 				mips, ram, bw, size, vmm, new TupleScheduler(mips, 1), new HashMap<Pair<String, String>, SelectivityModel>());
 		
 		getModules().add(module);
+		outputEdges.clear();
 		
 	}
 
@@ -87,6 +99,7 @@ public class Application {
 				mips, ram, bw, size, vmm, new TupleScheduler(mips, 1), new HashMap<Pair<String, String>, SelectivityModel>());
 
 		getModules().add(module);
+		outputEdges.clear();
 	}
 	
 	/**
@@ -104,6 +117,7 @@ public class Application {
 		AppEdge edge = new AppEdge(source, destination, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
 		getEdges().add(edge);
 		getEdgeMap().put(edge.getTupleType(), edge);
+		outputEdges.clear();
 	}
 	
 	/**
@@ -121,6 +135,7 @@ public class Application {
 		AppEdge edge = new AppEdge(source, destination, periodicity, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
 		getEdges().add(edge);
 		getEdgeMap().put(edge.getTupleType(), edge);
+		outputEdges.clear();
 	}
 	
 	/**
@@ -133,6 +148,7 @@ public class Application {
 	public void addTupleMapping(String moduleName, String inputTupleType, String outputTupleType, SelectivityModel selectivityModel){
 		AppModule module = getModuleByName(moduleName);
 		module.getSelectivityMap().put(new Pair<String, String>(inputTupleType, outputTupleType), selectivityModel);
+		outputEdges.clear();
 	}
 	
 	/**
@@ -193,43 +209,17 @@ public class Application {
 	 * @return
 	 */
 	public List<Tuple> getResultantTuples(String moduleName, Tuple inputTuple, int sourceDeviceId, int sourceModuleId){
-		List<Tuple> tuples = new ArrayList<Tuple>();
-		AppModule module = getModuleByName(moduleName);
-		for(AppEdge edge : getEdges()){
-			if(edge.getSource().equals(moduleName)){
-				Pair<String, String> pair = new Pair<String, String>(inputTuple.getTupleType(), edge.getTupleType());
-				
-				if(module.getSelectivityMap().get(pair)==null)
-					continue;
-				SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
-				if(selectivityModel.canSelect()){
-					//TODO check if the edge is ACTUATOR, then create multiple tuples
-					if(edge.getEdgeType() == AppEdge.ACTUATOR){
-						//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-							Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-									(long) (edge.getTupleCpuLength()),
-									inputTuple.getNumberOfPes(),
-									(long) (edge.getTupleNwLength()),
-									inputTuple.getCloudletOutputSize(),
-									inputTuple.getUtilizationModelCpu(),
-									inputTuple.getUtilizationModelRam(),
-									inputTuple.getUtilizationModelBw()
-									);
-							tuple.setActualTupleId(inputTuple.getActualTupleId());
-							tuple.setUserId(inputTuple.getUserId());
-							tuple.setAppId(inputTuple.getAppId());
-							tuple.setDestModuleName(edge.getDestination());
-							tuple.setSrcModuleName(edge.getSource());
-							tuple.setDirection(Tuple.ACTUATOR);
-							tuple.setTupleType(edge.getTupleType());
-							tuple.setSourceDeviceId(sourceDeviceId);
-							tuple.setSourceModuleId(sourceModuleId);
-							//tuple.setActuatorId(actuatorId);
-							
-							tuples.add(tuple);
-						//}
-					}else{
-						Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+		List<OutputEdge> outputEdges = getOutputEdges(moduleName, inputTuple.getTupleType());
+		if(outputEdges.isEmpty())
+			return Collections.emptyList();
+		List<Tuple> tuples = new ArrayList<Tuple>(outputEdges.size());
+		for(OutputEdge outputEdge : outputEdges){
+			AppEdge edge = outputEdge.edge;
+			if(outputEdge.selectivityModel.canSelect()){
+				//TODO check if the edge is ACTUATOR, then create multiple tuples
+				if(edge.getEdgeType() == AppEdge.ACTUATOR){
+					//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
+						Tuple tuple = Tuple.obtain(appId, FogUtils.generateTupleId(), edge.getDirection(),  
 								(long) (edge.getTupleCpuLength()),
 								inputTuple.getNumberOfPes(),
 								(long) (edge.getTupleNwLength()),
@@ -243,19 +233,146 @@ public class Application {
 						tuple.setAppId(inputTuple.getAppId());
 						tuple.setDestModuleName(edge.getDestination());
 						tuple.setSrcModuleName(edge.getSource());
-						tuple.setDirection(edge.getDirection());
+						tuple.setDirection(Tuple.ACTUATOR);
 						tuple.setTupleType(edge.getTupleType());
+						tuple.setSourceDeviceId(sourceDeviceId);
 						tuple.setSourceModuleId(sourceModuleId);
-						tuple.setTraversedMicroservices(inputTuple.getTraversed());
-
+						//tuple.setActuatorId(actuatorId);
+						
 						tuples.add(tuple);
-					}
+					//}
+				}else{
+					Tuple tuple = Tuple.obtain(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+							(long) (edge.getTupleCpuLength()),
+							inputTuple.getNumberOfPes(),
+							(long) (edge.getTupleNwLength()),
+							inputTuple.getCloudletOutputSize(),
+							inputTuple.getUtilizationModelCpu(),
+							inputTuple.getUtilizationModelRam(),
+							inputTuple.getUtilizationModelBw()
+							);
+					tuple.setActualTupleId(inputTuple.getActualTupleId());
+					tuple.setUserId(inputTuple.getUserId());
+					tuple.setAppId(inputTuple.getAppId());
+					tuple.setDestModuleName(edge.getDestination());
+					tuple.setSrcModuleName(edge.getSource());
+					tuple.setDirection(edge.getDirection());
+					tuple.setTupleType(edge.getTupleType());
+					tuple.setSourceModuleId(sourceModuleId);
+					tuple.setTraversedMicroservices(inputTuple.getTraversed());
+
+					tuples.add(tuple);
 				}
 			}
 		}
 		return tuples;
 	}
 	
+	/**
+	 * Edges leaving module <i>moduleName</i> with a selectivity model for input tuples of type <i>inputTupleType</i>,
+	 * in the order of the application edges. Computed once per module and input tuple type.
+	 */
+	private List<OutputEdge> getOutputEdges(String moduleName, String inputTupleType){
+		Map<String, List<OutputEdge>> moduleOutputEdges = outputEdges.get(moduleName);
+		if(moduleOutputEdges == null){
+			moduleOutputEdges = new HashMap<String, List<OutputEdge>>();
+			outputEdges.put(moduleName, moduleOutputEdges);
+		}
+		List<OutputEdge> result = moduleOutputEdges.get(inputTupleType);
+		if(result == null){
+			result = new ArrayList<OutputEdge>();
+			AppModule module = getModuleByName(moduleName);
+			for(AppEdge edge : getEdges()){
+				if(edge.getSource().equals(moduleName)){
+					SelectivityModel selectivityModel = module.getSelectivityMap().get(new Pair<String, String>(inputTupleType, edge.getTupleType()));
+					if(selectivityModel != null)
+						result.add(new OutputEdge(edge, selectivityModel));
+				}
+			}
+			moduleOutputEdges.put(inputTupleType, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Loops containing the edge from module <i>src</i> to module <i>dest</i>, compiled once per edge so that the
+	 * loop delay bookkeeping of each tuple does not scan every loop. Compiled again if loops are added.
+	 */
+	public LoopEdge getLoopEdge(String src, String dest){
+		if(loops.size() != loopEdgesLoopCount){
+			loopEdges.clear();
+			loopEdgesLoopCount = loops.size();
+		}
+		Map<String, LoopEdge> srcLoopEdges = loopEdges.get(src);
+		if(srcLoopEdges == null){
+			srcLoopEdges = new HashMap<String, LoopEdge>();
+			loopEdges.put(src, srcLoopEdges);
+		}
+		LoopEdge result = srcLoopEdges.get(dest);
+		if(result == null){
+			result = new LoopEdge(loops, src, dest);
+			srcLoopEdges.put(dest, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Ids of the loops containing an edge, in the order of the application loops.
+	 */
+	public static class LoopEdge {
+		private int firstLoopId = -1;
+		private int endingLoopId = -1;
+		private final int[] startingLoopIds;
+		
+		LoopEdge(List<AppLoop> loops, String src, String dest){
+			List<Integer> starting = new ArrayList<Integer>();
+			for(AppLoop loop : loops){
+				if(!loop.hasEdge(src, dest))
+					continue;
+				if(firstLoopId == -1)
+					firstLoopId = loop.getLoopId();
+				if(endingLoopId == -1 && loop.isEndModule(dest))
+					endingLoopId = loop.getLoopId();
+				if(loop.isStartModule(src))
+					starting.add(loop.getLoopId());
+			}
+			startingLoopIds = new int[starting.size()];
+			for(int i = 0; i < startingLoopIds.length; i++)
+				startingLoopIds[i] = starting.get(i);
+		}
+		
+		/**
+		 * @return id of the first loop containing the edge, -1 if there is none
+		 */
+		public int getFirstLoopId(){
+			return firstLoopId;
+		}
+		
+		/**
+		 * @return id of the first loop containing the edge and ending with its destination, -1 if there is none
+		 */
+		public int getEndingLoopId(){
+			return endingLoopId;
+		}
+		
+		/**
+		 * @return ids of the loops containing the edge and starting with its source
+		 */
+		public int[] getStartingLoopIds(){
+			return startingLoopIds;
+		}
+	}
+	
+	private static class OutputEdge {
+		final AppEdge edge;
+		final SelectivityModel selectivityModel;
+		
+		OutputEdge(AppEdge edge, SelectivityModel selectivityModel){
+			this.edge = edge;
+			this.selectivityModel = selectivityModel;
+		}
+	}
+	
 	/**
 	 * Create a tuple for a given application edge
 	 * @param edge
@@ -266,14 +383,14 @@ public class Application {
 		AppModule module = getModuleByName(edge.getSource());
 		if(edge.getEdgeType() == AppEdge.ACTUATOR){
 			for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-				Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+				Tuple tuple = Tuple.obtain(appId, FogUtils.generateTupleId(), edge.getDirection(),  
 						(long) (edge.getTupleCpuLength()),
 						1,
 						(long) (edge.getTupleNwLength()),
 						100,
-						new UtilizationModelFull(), 
-						new UtilizationModelFull(), 
-						new UtilizationModelFull()
+						Tuple.FULL_UTILIZATION, 
+						Tuple.FULL_UTILIZATION, 
+						Tuple.FULL_UTILIZATION
 						);
 				tuple.setUserId(getUserId());
 				tuple.setAppId(getAppId());
@@ -288,14 +405,14 @@ public class Application {
 				return tuple;
 			}
 		}else{
-			Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+			Tuple tuple = Tuple.obtain(appId, FogUtils.generateTupleId(), edge.getDirection(),  
 					(long) (edge.getTupleCpuLength()),
 					1,
 					(long) (edge.getTupleNwLength()),
 					100,
-					new UtilizationModelFull(), 
-					new UtilizationModelFull(), 
-					new UtilizationModelFull()
+					Tuple.FULL_UTILIZATION, 
+					Tuple.FULL_UTILIZATION, 
+					Tuple.FULL_UTILIZATION
 					);
 			//tuple.setActualTupleId(inputTuple.getActualTupleId());
 			tuple.setUserId(getUserId());
@@ -322,12 +439,14 @@ public class Application {
 	}
 	public void setModules(List<AppModule> modules) {
 		this.modules = modules;
+		outputEdges.clear();
 	}
 	public List<AppEdge> getEdges() {
 		return edges;
 	}
 	public void setEdges(List<AppEdge> edges) {
 		this.edges = edges;
+		outputEdges.clear();
 	}
 	public GeoCoverage getGeoCoverage() {
 		return geoCoverage;
@@ -342,6 +461,7 @@ public class Application {
 
 	public void setLoops(List<AppLoop> loops) {
 		this.loops = loops;
+		loopEdgesLoopCount = -1;
 	}
 
 	public int getUserId() {
@@ -0,0 +1,45 @@
+package org.fog.entities;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * Link used by a fog device to send tuples to its cluster members: either a dedicated link to one
+ * member, or the wireless medium shared by the members within communication range when
+ * Config.CLUSTER_SHARED_MEDIUM is set. Tuples are transmitted one at a time at the bandwidth of the
+ * link, the others wait in its queue.
+ */
+public class ClusterLink {
+
+	private double bandwidth;
+	private final Queue<Pair<Tuple, Integer>> tupleQueue; // tuple and destination cluster device ID
+	private boolean busy;
+
+	public ClusterLink(double bandwidth) {
+		this.bandwidth = bandwidth;
+		this.tupleQueue = new LinkedList<Pair<Tuple, Integer>>();
+		this.busy = false;
+	}
+
+	public double getBandwidth() {
+		return bandwidth;
+	}
+
+	public void setBandwidth(double bandwidth) {
+		this.bandwidth = bandwidth;
+	}
+
+	public Queue<Pair<Tuple, Integer>> getTupleQueue() {
+		return tupleQueue;
+	}
+
+	public boolean isBusy() {
+		return busy;
+	}
+
+	public void setBusy(boolean busy) {
+		this.busy = busy;
+	}
+}
@@ -12,9 +12,9 @@ import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
 import org.cloudbus.cloudsim.sdn.overbooking.BwProvisionerOverbooking;
 import org.cloudbus.cloudsim.sdn.overbooking.PeProvisionerOverbooking;
 import org.fog.application.AppEdge;
-import org.fog.application.AppLoop;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
+import org.fog.mobilitydata.ClusterMembershipDelta;
 import org.fog.mobilitydata.Clustering;
 import org.fog.policy.AppModuleAllocationPolicy;
 import org.fog.scheduler.StreamOperatorScheduler;
@@ -31,6 +31,14 @@ public class FogDevice extends PowerDatacenter {
 
 	protected Map<String, Application> applicationMap;
 	protected Map<String, List<String>> appToModulesMap;
+	/**
+	 * Names of the modules of each application placed on this device, same content as appToModulesMap
+	 */
+	protected Map<String, Set<String>> appToModuleNames;
+	/**
+	 * Module name to id of the VM running it on this device, rebuilt whenever the host VM list changes
+	 */
+	protected Map<String, Integer> moduleToVmId;
 	protected Map<Integer, Double> childToLatencyMap;
 
 	protected Map<Integer, Integer> cloudTrafficMap;
@@ -68,27 +76,27 @@ public class FogDevice extends PowerDatacenter {
 	protected double uplinkLatency;
 	protected List<Pair<Integer, Double>> associatedActuatorIds;
 
-	protected double energyConsumption;
-	protected double lastUtilizationUpdateTime;
-	protected double lastUtilization;
+	protected EnergyAccount energyAccount;
+	private Vm submittedVm; // received a cloudlet since its processing was last updated
 	private int level;
 
 	protected double ratePerMips;
 
-	protected double totalCost;
-
 	protected Map<String, Map<String, Integer>> moduleInstanceCount;
 
 	protected List<Integer> clusterMembers = new ArrayList<Integer>();
 	protected boolean isInCluster = false;
 	protected boolean selfCluster = false; // IF there is only one fog device in one cluster without any sibling
 	protected Map<Integer, Double> clusterMembersToLatencyMap; // latency to other cluster members
+	protected Map<Integer, Double> clusterMembersToBandwidthMap; // bandwidth of the link to cluster members, clusterLinkBandwidth if absent
+	protected Set<Integer> clusterMembersInRange; // cluster members within Config.Node_Communication_RANGE
 
-	protected Queue<Pair<Tuple, Integer>> clusterTupleQueue;// tuple and destination cluster device ID
-	protected boolean isClusterLinkBusy; // Flag denoting whether the link connecting to cluster from this FogDevice is
-											// busy
+	protected Map<Integer, ClusterLink> clusterLinks; // dedicated link to each cluster member
+	protected ClusterLink sharedClusterMedium; // link to the members in range, if Config.CLUSTER_SHARED_MEDIUM
 	protected double clusterLinkBandwidth;
 
+	protected Set<Integer> tupleAckListeners = new HashSet<Integer>(); // senders acknowledged without Config.TUPLE_ACKS
+
 	public FogDevice(String name, FogDeviceCharacteristics characteristics, VmAllocationPolicy vmAllocationPolicy,
 			List<Storage> storageList, double schedulingInterval, double uplinkBandwidth, double downlinkBandwidth,
 			double uplinkLatency, double ratePerMips) throws Exception {
@@ -118,6 +126,8 @@ public class FogDevice extends PowerDatacenter {
 
 		applicationMap = new HashMap<String, Application>();
 		appToModulesMap = new HashMap<String, List<String>>();
+		appToModuleNames = new HashMap<String, Set<String>>();
+		moduleToVmId = new HashMap<String, Integer>();
 		northTupleQueue = new LinkedList<Tuple>();
 		southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
 		setNorthLinkBusy(false);
@@ -130,14 +140,13 @@ public class FogDevice extends PowerDatacenter {
 
 		this.lockTime = 0;
 
-		this.energyConsumption = 0;
-		this.lastUtilization = 0;
-		setTotalCost(0);
+		this.energyAccount = new EnergyAccount(getHost().getPowerModel());
 		setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
 		setChildToLatencyMap(new HashMap<Integer, Double>());
 
-		clusterTupleQueue = new LinkedList<>();
-		setClusterLinkBusy(false);
+		clusterMembersToBandwidthMap = new HashMap<>();
+		clusterMembersInRange = new HashSet<>();
+		clusterLinks = new HashMap<>();
 
 	}
 
@@ -194,6 +203,8 @@ public class FogDevice extends PowerDatacenter {
 
 		applicationMap = new HashMap<String, Application>();
 		appToModulesMap = new HashMap<String, List<String>>();
+		appToModuleNames = new HashMap<String, Set<String>>();
+		moduleToVmId = new HashMap<String, Integer>();
 		northTupleQueue = new LinkedList<Tuple>();
 		southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
 		setNorthLinkBusy(false);
@@ -206,14 +217,13 @@ public class FogDevice extends PowerDatacenter {
 
 		this.lockTime = 0;
 
-		this.energyConsumption = 0;
-		this.lastUtilization = 0;
-		setTotalCost(0);
+		this.energyAccount = new EnergyAccount(getHost().getPowerModel());
 		setChildToLatencyMap(new HashMap<Integer, Double>());
 		setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
 
-		clusterTupleQueue = new LinkedList<>();
-		setClusterLinkBusy(false);
+		clusterMembersToBandwidthMap = new HashMap<>();
+		clusterMembersInRange = new HashSet<>();
+		clusterLinks = new HashMap<>();
 	}
 
 	/**
@@ -277,12 +287,15 @@ public class FogDevice extends PowerDatacenter {
 			manageResources(ev);
 			break;
 		case FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE:
-			updateClusterTupleQueue();
+			updateClusterTupleQueue((ClusterLink) ev.getData());
 			break;
 		case FogEvents.START_DYNAMIC_CLUSTERING:
 			// This message is received by the devices to start their clustering
 			processClustering(this.getParentId(), this.getId(), ev);
 			break;
+		case FogEvents.UPDATE_CLUSTER_MEMBERSHIP:
+			updateClusterMembership((ClusterMembershipDelta) ev.getData());
+			break;
 		default:
 			break;
 		}
@@ -417,13 +430,16 @@ public class FogDevice extends PowerDatacenter {
 				minTime = time;
 			}
 
-			Log.formatLine("%.2f: [Host #%d] utilization is %.2f%%", currentTime, host.getId(),
-					host.getUtilizationOfCpu() * 100);
+			// the arguments alone cost boxing and a utilization computation
+			if (!Log.isDisabled())
+				Log.formatLine("%.2f: [Host #%d] utilization is %.2f%%", currentTime, host.getId(),
+						host.getUtilizationOfCpu() * 100);
 		}
 
 		if (timeDiff > 0) {
-			Log.formatLine("\nEnergy consumption for the last time frame from %.2f to %.2f:", getLastProcessTime(),
-					currentTime);
+			if (!Log.isDisabled())
+				Log.formatLine("\nEnergy consumption for the last time frame from %.2f to %.2f:", getLastProcessTime(),
+						currentTime);
 
 			for (PowerHost host : this.<PowerHost>getHostList()) {
 				double previousUtilizationOfCpu = host.getPreviousUtilizationOfCpu();
@@ -432,13 +448,17 @@ public class FogDevice extends PowerDatacenter {
 						utilizationOfCpu, timeDiff);
 				timeFrameDatacenterEnergy += timeFrameHostEnergy;
 
-				Log.printLine();
-				Log.formatLine("%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%", currentTime,
-						host.getId(), getLastProcessTime(), previousUtilizationOfCpu * 100, utilizationOfCpu * 100);
-				Log.formatLine("%.2f: [Host #%d] energy is %.2f W*sec", currentTime, host.getId(), timeFrameHostEnergy);
+				if (!Log.isDisabled()) {
+					Log.printLine();
+					Log.formatLine("%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%", currentTime,
+							host.getId(), getLastProcessTime(), previousUtilizationOfCpu * 100, utilizationOfCpu * 100);
+					Log.formatLine("%.2f: [Host #%d] energy is %.2f W*sec", currentTime, host.getId(),
+							timeFrameHostEnergy);
+				}
 			}
 
-			Log.formatLine("\n%.2f: Data center's energy is %.2f W*sec\n", currentTime, timeFrameDatacenterEnergy);
+			if (!Log.isDisabled())
+				Log.formatLine("\n%.2f: Data center's energy is %.2f W*sec\n", currentTime, timeFrameDatacenterEnergy);
 		}
 
 		setPower(getPower() + timeFrameDatacenterEnergy);
@@ -486,7 +506,10 @@ public class FogDevice extends PowerDatacenter {
 							updateTimingsOnSending(resTuple);
 							sendToSelf(resTuple);
 						}
-						sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
+						if (Config.RECYCLE_TUPLES)
+							Tuple.recycle(tuple);
+						else
+							sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
 					}
 				}
 			}
@@ -499,21 +522,14 @@ public class FogDevice extends PowerDatacenter {
 		// TODO ADD CODE FOR UPDATING TIMINGS WHEN A TUPLE IS GENERATED FROM A
 		// PREVIOUSLY RECIEVED TUPLE.
 		// WILL NEED TO CHECK IF A NEW LOOP STARTS AND INSERT A UNIQUE TUPLE ID TO IT.
-		String srcModule = resTuple.getSrcModuleName();
-		String destModule = resTuple.getDestModuleName();
-		for (AppLoop loop : getApplicationMap().get(resTuple.getAppId()).getLoops()) {
-			if (loop.hasEdge(srcModule, destModule) && loop.isStartModule(srcModule)) {
-				int tupleId = TimeKeeper.getInstance().getUniqueId();
-				resTuple.setActualTupleId(tupleId);
-				if (!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-					TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-				TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-				TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-
-				// Logger.debug(getName(),
-				// "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
-
-			}
+		Application app = getApplicationMap().get(resTuple.getAppId());
+		for (int loopId : app.getLoopEdge(resTuple.getSrcModuleName(), resTuple.getDestModuleName()).getStartingLoopIds()) {
+			int tupleId = TimeKeeper.getInstance().getUniqueId();
+			resTuple.setActualTupleId(tupleId);
+			TimeKeeper.getInstance().loopTupleEmitted(loopId, tupleId);
+
+			// Logger.debug(getName(),
+			// "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
 		}
 	}
 
@@ -562,35 +578,28 @@ public class FogDevice extends PowerDatacenter {
 
 	}
 
+	/**
+	 * Brings the processing of the VMs up to now and accounts for the energy drawn so far.
+	 * <p>
+	 * A VM already brought up to now with the MIPS it has is skipped, as processing it again would
+	 * change nothing, unless it has received a cloudlet since.
+	 */
 	private void updateEnergyConsumption() {
 		double totalMipsAllocated = 0;
+		// all the VMs of the device run on its only host
+		VmScheduler vmScheduler = getHost().getVmScheduler();
 		for (final Vm vm : getHost().getVmList()) {
-			AppModule operator = (AppModule) vm;
-			operator.updateVmProcessing(CloudSim.clock(),
-					getVmAllocationPolicy().getHost(operator).getVmScheduler().getAllocatedMipsForVm(operator));
-			totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
+			List<Double> allocatedMips = vmScheduler.getAllocatedMipsForVm(vm);
+			CloudletScheduler cloudletScheduler = vm.getCloudletScheduler();
+			if (vm == submittedVm || cloudletScheduler.getPreviousTime() != CloudSim.clock()
+					|| !Objects.equals(allocatedMips, cloudletScheduler.getCurrentMipsShare()))
+				vm.updateVmProcessing(CloudSim.clock(), allocatedMips);
+			totalMipsAllocated += vmScheduler.getTotalAllocatedMipsForVm(vm);
 		}
+		submittedVm = null;
 
-		double timeNow = CloudSim.clock();
-		double currentEnergyConsumption = getEnergyConsumption();
-		double newEnergyConsumption = currentEnergyConsumption
-				+ (timeNow - lastUtilizationUpdateTime) * getHost().getPowerModel().getPower(lastUtilization);
-		setEnergyConsumption(newEnergyConsumption);
-
-		/*
-		 * if(getName().equals("d-0")){ System.out.println("------------------------");
-		 * System.out.println("Utilization = "+lastUtilization);
-		 * System.out.println("Power = "+getHost().getPowerModel().getPower(
-		 * lastUtilization)); System.out.println(timeNow-lastUtilizationUpdateTime); }
-		 */
-
-		double currentCost = getTotalCost();
-		double newcost = currentCost
-				+ (timeNow - lastUtilizationUpdateTime) * getRatePerMips() * lastUtilization * getHost().getTotalMips();
-		setTotalCost(newcost);
-
-		lastUtilization = Math.min(1, totalMipsAllocated / getHost().getTotalMips());
-		lastUtilizationUpdateTime = timeNow;
+		energyAccount.update(CloudSim.clock(), Math.min(1, totalMipsAllocated / getHost().getTotalMips()),
+				getRatePerMips(), getHost().getTotalMips());
 	}
 
 	protected void processAppSubmit(SimEvent ev) {
@@ -635,6 +644,8 @@ public class FogDevice extends PowerDatacenter {
 				return;
 			}
 		}
+		if (getChildrenIds().size() > 1)
+			tuple.setShared();
 		for (int childId : getChildrenIds()) {
 			sendDown(tuple, childId);
 		}
@@ -667,7 +678,7 @@ public class FogDevice extends PowerDatacenter {
 		 * getDestination()));
 		 */
 
-		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+		sendTupleAck(ev);
 
 		if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
 		}
@@ -696,12 +707,8 @@ public class FogDevice extends PowerDatacenter {
 		}
 
 		if (appToModulesMap.containsKey(tuple.getAppId())) {
-			if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-				int vmId = -1;
-				for (Vm vm : getHost().getVmList()) {
-					if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-						vmId = vm.getId();
-				}
+			if (isModulePlaced(tuple.getAppId(), tuple.getDestModuleName())) {
+				int vmId = getVmIdForModule(tuple.getDestModuleName());
 				if (vmId < 0 || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName())
 						&& tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
 					return;
@@ -716,6 +723,8 @@ public class FogDevice extends PowerDatacenter {
 				if (tuple.getDirection() == Tuple.UP)
 					sendUp(tuple);
 				else if (tuple.getDirection() == Tuple.DOWN) {
+					if (getChildrenIds().size() > 1)
+						tuple.setShared();
 					for (int childId : getChildrenIds())
 						sendDown(tuple, childId);
 				}
@@ -726,6 +735,8 @@ public class FogDevice extends PowerDatacenter {
 			if (tuple.getDirection() == Tuple.UP)
 				sendUp(tuple);
 			else if (tuple.getDirection() == Tuple.DOWN) {
+				if (getChildrenIds().size() > 1)
+					tuple.setShared();
 				for (int childId : getChildrenIds())
 					sendDown(tuple, childId);
 			}
@@ -734,32 +745,35 @@ public class FogDevice extends PowerDatacenter {
 
 	protected void updateTimingsOnReceipt(Tuple tuple) {
 		Application app = getApplicationMap().get(tuple.getAppId());
-		String srcModule = tuple.getSrcModuleName();
-		String destModule = tuple.getDestModuleName();
-		List<AppLoop> loops = app.getLoops();
-		for (AppLoop loop : loops) {
-			if (loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)) {
-				Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				if (startTime == null)
-					break;
-				if (!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())) {
-					TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-					TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-				}
-				double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-				int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-				double delay = CloudSim.clock() - TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-				double newAverage = (currentAverage * currentCount + delay) / (currentCount + 1);
-				TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-				TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount + 1);
-				break;
-			}
-		}
+		int loopId = app.getLoopEdge(tuple.getSrcModuleName(), tuple.getDestModuleName()).getEndingLoopId();
+		if (loopId != -1)
+			TimeKeeper.getInstance().loopTupleReceived(loopId, tuple.getActualTupleId());
 	}
 
 	protected void processSensorJoining(SimEvent ev) {
-		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+		sendTupleAck(ev);
+	}
+
+	/**
+	 * Acknowledges the tuple of the event to its sender, if acknowledgements are enabled for it. Link
+	 * queues do not depend on acknowledgements: they are released by the UPDATE_NORTH_TUPLE_QUEUE,
+	 * UPDATE_SOUTH_TUPLE_QUEUE and UPDATE_CLUSTER_TUPLE_QUEUE events of the sender.
+	 */
+	protected void sendTupleAck(SimEvent ev) {
+		if (Config.TUPLE_ACKS || tupleAckListeners.contains(ev.getSource()))
+			send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+	}
+
+	/**
+	 * Makes this device acknowledge the tuples sent by the entity with a TUPLE_ACK event, which is
+	 * otherwise only done with Config.TUPLE_ACKS.
+	 */
+	public void addTupleAckListener(int entityId) {
+		tupleAckListeners.add(entityId);
+	}
+
+	public void removeTupleAckListener(int entityId) {
+		tupleAckListeners.remove(entityId);
 	}
 
 	protected void executeTuple(SimEvent ev, String moduleName) {
@@ -785,6 +799,7 @@ public class FogDevice extends PowerDatacenter {
 		TimeKeeper.getInstance().tupleStartedExecution(tuple);
 		updateAllocatedMips(moduleName);
 		processCloudletSubmit(ev, false);
+		submittedVm = getHost().getVm(tuple.getVmId(), tuple.getUserId());
 		updateAllocatedMips(moduleName);
 		/*
 		 * for(Vm vm : getHost().getVmList()){ Logger.error(getName(),
@@ -795,11 +810,7 @@ public class FogDevice extends PowerDatacenter {
 
 	protected void processModuleArrival(SimEvent ev) {
 		AppModule module = (AppModule) ev.getData();
-		String appId = module.getAppId();
-		if (!appToModulesMap.containsKey(appId)) {
-			appToModulesMap.put(appId, new ArrayList<String>());
-		}
-		appToModulesMap.get(appId).add(module.getName());
+		addPlacedModule(module.getAppId(), module.getName());
 		processVmCreate(ev, false);
 		if (module.isBeingInstantiated()) {
 			module.setBeingInstantiated(false);
@@ -816,6 +827,62 @@ public class FogDevice extends PowerDatacenter {
 		processVmDestroy(ev, false);
 	}
 
+	@Override
+	protected void processVmCreate(SimEvent ev, boolean ack) {
+		super.processVmCreate(ev, ack);
+		updateModuleToVmId();
+	}
+
+	@Override
+	protected void processVmDestroy(SimEvent ev, boolean ack) {
+		super.processVmDestroy(ev, ack);
+		updateModuleToVmId();
+	}
+
+	@Override
+	protected void processVmMigrate(SimEvent ev, boolean ack) {
+		super.processVmMigrate(ev, ack);
+		updateModuleToVmId();
+	}
+
+	/**
+	 * Rebuilds the module name to VM id index from the host VM list. Must be called after every change of
+	 * that list. When several VMs run the same module, the last one of the list is kept.
+	 */
+	protected void updateModuleToVmId() {
+		moduleToVmId.clear();
+		for (Vm vm : getHost().getVmList())
+			moduleToVmId.put(((AppModule) vm).getName(), vm.getId());
+	}
+
+	/**
+	 * @return id of the VM running the module on this device, -1 if there is none
+	 */
+	protected int getVmIdForModule(String moduleName) {
+		Integer vmId = moduleToVmId.get(moduleName);
+		return vmId == null ? -1 : vmId;
+	}
+
+	protected void addPlacedModule(String appId, String moduleName) {
+		if (!appToModulesMap.containsKey(appId)) {
+			appToModulesMap.put(appId, new ArrayList<String>());
+			appToModuleNames.put(appId, new HashSet<String>());
+		}
+		appToModulesMap.get(appId).add(moduleName);
+		appToModuleNames.get(appId).add(moduleName);
+	}
+
+	protected void removePlacedModule(String appId, String moduleName) {
+		List<String> modules = appToModulesMap.get(appId);
+		if (modules != null && modules.remove(moduleName) && !modules.contains(moduleName))
+			appToModuleNames.get(appId).remove(moduleName);
+	}
+
+	protected boolean isModulePlaced(String appId, String moduleName) {
+		Set<String> modules = appToModuleNames.get(appId);
+		return modules != null && modules.contains(moduleName);
+	}
+
 	protected void initializePeriodicTuples(AppModule module) {
 		String appId = module.getAppId();
 		Application app = getApplicationMap().get(appId);
@@ -1009,11 +1076,18 @@ public class FogDevice extends PowerDatacenter {
 	}
 
 	public double getEnergyConsumption() {
-		return energyConsumption;
+		return energyAccount.getEnergyConsumption();
 	}
 
 	public void setEnergyConsumption(double energyConsumption) {
-		this.energyConsumption = energyConsumption;
+		energyAccount.setEnergyConsumption(energyConsumption);
+	}
+
+	/**
+	 * @return energy, cost and utilization changes of the device
+	 */
+	public EnergyAccount getEnergyAccount() {
+		return energyAccount;
 	}
 
 	public Map<Integer, Double> getChildToLatencyMap() {
@@ -1041,11 +1115,11 @@ public class FogDevice extends PowerDatacenter {
 	}
 
 	public double getTotalCost() {
-		return totalCost;
+		return energyAccount.getTotalCost();
 	}
 
 	public void setTotalCost(double totalCost) {
-		this.totalCost = totalCost;
+		energyAccount.setTotalCost(totalCost);
 	}
 
 	public Map<String, Map<String, Integer>> getModuleInstanceCount() {
@@ -1072,7 +1146,7 @@ public class FogDevice extends PowerDatacenter {
 		}
 	}
 
-	public void setClusterMembers(List clusterList) {
+	public void setClusterMembers(List<Integer> clusterList) {
 		this.clusterMembers = clusterList;
 	}
 
@@ -1114,6 +1188,70 @@ public class FogDevice extends PowerDatacenter {
 		cms.createClusterMembers(this.getParentId(), this.getId(), objectLocator);
 	}
 
+	/**
+	 * Applies a change of cluster members computed by IncrementalClustering.
+	 */
+	protected void updateClusterMembership(ClusterMembershipDelta delta) {
+		List<Integer> members = new ArrayList<Integer>(getClusterMembers());
+		Map<Integer, Double> latencies = new HashMap<Integer, Double>();
+		if (getClusterMembersToLatencyMap() != null)
+			latencies.putAll(getClusterMembersToLatencyMap());
+		Map<Integer, Double> bandwidths = new HashMap<Integer, Double>(getClusterMembersToBandwidthMap());
+		Set<Integer> inRange = new HashSet<Integer>(getClusterMembersInRange());
+
+		for (Integer memberId : delta.getRemovedMembers()) {
+			members.remove(memberId);
+			latencies.remove(memberId);
+			bandwidths.remove(memberId);
+			inRange.remove(memberId);
+		}
+		for (int memberId : delta.getAddedMembersToLatency().keySet()) {
+			if (!members.contains(memberId))
+				members.add(memberId);
+			latencies.put(memberId, delta.getAddedMembersToLatency().get(memberId));
+			bandwidths.put(memberId, delta.getAddedMembersToBandwidth().get(memberId));
+			inRange.add(memberId);
+		}
+
+		setIsInCluster(true);
+		setSelfCluster(members.isEmpty());
+		setClusterMembersToLatencyMap(latencies);
+		setClusterMembersToBandwidthMap(bandwidths);
+		setClusterMembersInRange(inRange);
+		setClusterMembers(members);
+
+		for (Integer memberId : delta.getRemovedMembers()) {
+			if (!members.contains(memberId))
+				dropClusterLink(memberId);
+		}
+	}
+
+	/**
+	 * Forgets the link to a former cluster member, and sends the tuples still queued for it through
+	 * the parent, where the routing tables send them once it left the cluster.
+	 */
+	private void dropClusterLink(int memberId) {
+		List<Tuple> rerouted = new ArrayList<Tuple>();
+		ClusterLink link = clusterLinks.remove(memberId);
+		if (link != null) {
+			for (Pair<Tuple, Integer> pair : link.getTupleQueue())
+				rerouted.add(pair.getFirst());
+			link.getTupleQueue().clear();
+		}
+		if (sharedClusterMedium != null) {
+			Iterator<Pair<Tuple, Integer>> queued = sharedClusterMedium.getTupleQueue().iterator();
+			while (queued.hasNext()) {
+				Pair<Tuple, Integer> pair = queued.next();
+				if (pair.getSecond() == memberId) {
+					rerouted.add(pair.getFirst());
+					queued.remove();
+				}
+			}
+		}
+		for (Tuple tuple : rerouted)
+			sendUp(tuple);
+	}
+
 	public double getClusterLinkBandwidth() {
 		return clusterLinkBandwidth;
 	}
@@ -1122,40 +1260,86 @@ public class FogDevice extends PowerDatacenter {
 		this.clusterLinkBandwidth = clusterLinkBandwidth;
 	}
 
+	public void setClusterMembersToBandwidthMap(Map<Integer, Double> clusterMembersToBandwidthMap) {
+		this.clusterMembersToBandwidthMap = clusterMembersToBandwidthMap;
+		for (Map.Entry<Integer, ClusterLink> link : clusterLinks.entrySet()) {
+			Double bandwidth = clusterMembersToBandwidthMap.get(link.getKey());
+			link.getValue().setBandwidth(bandwidth != null ? bandwidth : getClusterLinkBandwidth());
+		}
+	}
+
+	public Map<Integer, Double> getClusterMembersToBandwidthMap() {
+		return clusterMembersToBandwidthMap;
+	}
+
+	public void setClusterMembersInRange(Set<Integer> clusterMembersInRange) {
+		this.clusterMembersInRange = clusterMembersInRange;
+	}
+
+	public Set<Integer> getClusterMembersInRange() {
+		return clusterMembersInRange;
+	}
+
 	protected void sendToCluster(Tuple tuple, int clusterNodeID) {
 		if (getClusterMembers().contains(clusterNodeID)) {
-			if (!isClusterLinkBusy) {
-				sendThroughFreeClusterLink(tuple, clusterNodeID);
+			ClusterLink link = getClusterLink(clusterNodeID);
+			if (!link.isBusy()) {
+				sendThroughFreeClusterLink(link, tuple, clusterNodeID);
 			} else {
-				clusterTupleQueue.add(new Pair<Tuple, Integer>(tuple, clusterNodeID));
+				link.getTupleQueue().add(new Pair<Tuple, Integer>(tuple, clusterNodeID));
 			}
 		}
 	}
 
-	private void updateClusterTupleQueue() {
-		if (!getClusterTupleQueue().isEmpty()) {
-			Pair<Tuple, Integer> pair = getClusterTupleQueue().poll();
-			sendThroughFreeClusterLink(pair.getFirst(), pair.getSecond());
+	/**
+	 * Returns the link used to send tuples to a cluster member. Members within communication range
+	 * share the wireless medium of this device when Config.CLUSTER_SHARED_MEDIUM is set, otherwise
+	 * every member has its own link, so a busy member does not delay the transfers to the others.
+	 */
+	protected ClusterLink getClusterLink(int clusterNodeID) {
+		if (Config.CLUSTER_SHARED_MEDIUM && clusterMembersInRange.contains(clusterNodeID)) {
+			if (sharedClusterMedium == null)
+				sharedClusterMedium = new ClusterLink(getClusterLinkBandwidth());
+			return sharedClusterMedium;
+		}
+		ClusterLink link = clusterLinks.get(clusterNodeID);
+		if (link == null) {
+			Double bandwidth = clusterMembersToBandwidthMap.get(clusterNodeID);
+			link = new ClusterLink(bandwidth != null ? bandwidth : getClusterLinkBandwidth());
+			clusterLinks.put(clusterNodeID, link);
+		}
+		return link;
+	}
+
+	protected void updateClusterTupleQueue(ClusterLink link) {
+		if (!link.getTupleQueue().isEmpty()) {
+			Pair<Tuple, Integer> pair = link.getTupleQueue().poll();
+			sendThroughFreeClusterLink(link, pair.getFirst(), pair.getSecond());
 		} else {
-			setClusterLinkBusy(false);
+			link.setBusy(false);
 		}
 	}
 
-	private void sendThroughFreeClusterLink(Tuple tuple, Integer clusterNodeID) {
-		double networkDelay = tuple.getCloudletFileSize() / getClusterLinkBandwidth();
-		setClusterLinkBusy(true);
+	protected void sendThroughFreeClusterLink(ClusterLink link, Tuple tuple, int clusterNodeID) {
+		if (!isClusterMemberLinked(clusterNodeID)) {
+			// left the cluster, see dropClusterLink
+			sendUp(tuple);
+			updateClusterTupleQueue(link);
+			return;
+		}
+		double networkDelay = tuple.getCloudletFileSize() / link.getBandwidth();
+		link.setBusy(true);
 		double latency = (getClusterMembersToLatencyMap()).get(clusterNodeID);
-		send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE);
+		send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE, link);
 		send(clusterNodeID, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
 		NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
 	}
 
-	protected void setClusterLinkBusy(boolean busy) {
-		this.isClusterLinkBusy = busy;
-	}
-
-	public Queue<Pair<Tuple, Integer>> getClusterTupleQueue() {
-		return clusterTupleQueue;
+	/**
+	 * @return whether the device is a cluster member with a known latency, to which tuples can be sent
+	 */
+	protected boolean isClusterMemberLinked(int clusterNodeID) {
+		return getClusterMembersToLatencyMap() != null && getClusterMembersToLatencyMap().containsKey(clusterNodeID);
 	}
 
 }
\ No newline at end of file
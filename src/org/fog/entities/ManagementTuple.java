@@ -20,10 +20,12 @@ public class ManagementTuple extends Tuple {
     public static final int SERVICE_DISCOVERY_INFO = 2;
     public static final int RESOURCE_UPDATE = 3;
     public static final int DEPLOYMENTREQUEST = 4;
+    public static final int SERVICE_DISCOVERY_BATCH = 5;
 
     public int managementTupleType;
     protected PlacementRequest placementRequest;
     protected Pair<String, Integer> serviceDiscoveryInfor;
+    protected List<Pair<String, Integer>> serviceDiscoveryBatch;
     protected Map<Application, List<ModuleLaunchConfig>> deployementSet;
     protected Pair<Integer, Map<String, Double>> resourceData;
 
@@ -57,6 +59,14 @@ public class ManagementTuple extends Tuple {
         return serviceDiscoveryInfor;
     }
 
+    public void setServiceDiscoveryBatch(List<Pair<String, Integer>> serviceDiscoveryBatch) {
+        this.serviceDiscoveryBatch = serviceDiscoveryBatch;
+    }
+
+    public List<Pair<String, Integer>> getServiceDiscoveryBatch() {
+        return serviceDiscoveryBatch;
+    }
+
     public void setDeployementSet(Map<Application, List<ModuleLaunchConfig>> deployementSet) {
         this.deployementSet = deployementSet;
     }
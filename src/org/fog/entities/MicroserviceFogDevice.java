@@ -2,14 +2,15 @@ package org.fog.entities;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.Storage;
-import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
+import org.fog.mobilitydata.ClusterMembershipDelta;
 import org.fog.placement.MicroservicePlacementLogic;
+import org.fog.placement.ParallelPlacementSolver;
 import org.fog.placement.PlacementLogicOutput;
 import org.fog.utils.*;
 import org.json.simple.JSONObject;
@@ -42,9 +43,9 @@ public class MicroserviceFogDevice extends FogDevice {
 
     /**
      * used to forward tuples towards the destination device
-     * map of <destinationID,nextDeviceID> based on shortest path.
+     * next device to forward to and link to use for each destination, based on shortest path.
      */
-    protected Map<Integer, Integer> routingTable = new HashMap<>();
+    protected RoutingTable routingTable;
 
 
     protected ControllerComponent controllerComponent;
@@ -72,6 +73,9 @@ public class MicroserviceFogDevice extends FogDevice {
             case FogEvents.PROCESS_PRS:
                 processPlacementRequests();
                 break;
+            case FogEvents.SOLVE_PLACEMENTS:
+                ParallelPlacementSolver.solvePending();
+                break;
             case FogEvents.RECEIVE_PR:
                 addPlacementRequest((PlacementRequest) ev.getData());
                 break;
@@ -113,22 +117,22 @@ public class MicroserviceFogDevice extends FogDevice {
         placementRequests.add(pr);
         if (MicroservicePlacementConfig.PR_PROCESSING_MODE == MicroservicePlacementConfig.SEQUENTIAL && placementRequests.size() == 1)
             sendNow(getId(), FogEvents.PROCESS_PRS);
+        else if (MicroservicePlacementConfig.PR_PROCESSING_MODE == MicroservicePlacementConfig.BATCHED && placementRequests.size() == 1)
+            send(getId(), MicroservicePlacementConfig.PLACEMENT_BATCH_WINDOW, FogEvents.PROCESS_PRS);
     }
 
-    private void sendThroughFreeClusterLink(Tuple tuple, Integer clusterNodeID) {
-        double networkDelay = tuple.getCloudletFileSize() / getClusterLinkBandwidth();
-        setClusterLinkBusy(true);
-        double latency = (getClusterMembersToLatencyMap()).get(clusterNodeID);
-        send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE);
-
-        if (tuple instanceof ManagementTuple) {
+    protected void sendThroughFreeClusterLink(ClusterLink link, Tuple tuple, int clusterNodeID) {
+        if (tuple instanceof ManagementTuple && isClusterMemberLinked(clusterNodeID)) {
+            double networkDelay = tuple.getCloudletFileSize() / link.getBandwidth();
+            link.setBusy(true);
+            double latency = (getClusterMembersToLatencyMap()).get(clusterNodeID);
+            send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE, link);
             send(clusterNodeID, networkDelay + latency + ((ManagementTuple) tuple).processingDelay, FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
             //todo
 //            if (Config.ENABLE_NETWORK_USAGE_AT_PLACEMENT)
 //                NetworkUsageMonitor.sendingManagementTuple(latency, tuple.getCloudletFileSize());
         } else {
-            send(clusterNodeID, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
-            NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
+            super.sendThroughFreeClusterLink(link, tuple, clusterNodeID);
         }
     }
 
@@ -144,11 +148,11 @@ public class MicroserviceFogDevice extends FogDevice {
         return deviceType;
     }
 
-    public void addRoutingTable(Map<Integer, Integer> routingTable) {
+    public void addRoutingTable(RoutingTable routingTable) {
         this.routingTable = routingTable;
     }
 
-    public Map<Integer, Integer> getRoutingTable() {
+    public RoutingTable getRoutingTable() {
         return routingTable;
     }
 
@@ -163,7 +167,7 @@ public class MicroserviceFogDevice extends FogDevice {
             updateCloudTraffic();
         }
 
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        sendTupleAck(ev);
 
         if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
         }
@@ -210,11 +214,7 @@ public class MicroserviceFogDevice extends FogDevice {
         }
 
         if (tuple.getDestinationDeviceId() == getId()) {
-            int vmId = -1;
-            for (Vm vm : getHost().getVmList()) {
-                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                    vmId = vm.getId();
-            }
+            int vmId = getVmIdForModule(tuple.getDestModuleName());
             if (vmId < 0
                     || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
                     tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -228,26 +228,12 @@ public class MicroserviceFogDevice extends FogDevice {
             executeTuple(ev, tuple.getDestModuleName());
         } else {
             if (tuple.getDestinationDeviceId() != -1) {
-                int nextDeviceToSend = routingTable.get(tuple.getDestinationDeviceId());
-                if (nextDeviceToSend == parentId)
-                    sendUp(tuple);
-                else if (childrenIds.contains(nextDeviceToSend))
-                    sendDown(tuple, nextDeviceToSend);
-                else if (getClusterMembers().contains(nextDeviceToSend))
-                    sendToCluster(tuple, nextDeviceToSend);
-                else {
-                    Logger.error("Routing error", "Routing table of " + getName() + "does not contain next device for destination Id" + tuple.getDestinationDeviceId());
-
-                }
+                routeTuple(tuple);
             } else {
                 if (tuple.getDirection() == Tuple.DOWN) {
                     if (appToModulesMap.containsKey(tuple.getAppId())) {
-                        if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                            int vmId = -1;
-                            for (Vm vm : getHost().getVmList()) {
-                                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                                    vmId = vm.getId();
-                            }
+                        if (isModulePlaced(tuple.getAppId(), tuple.getDestModuleName())) {
+                            int vmId = getVmIdForModule(tuple.getDestModuleName());
                             if (vmId < 0
                                     || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
                                     tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -265,6 +251,8 @@ public class MicroserviceFogDevice extends FogDevice {
                     }
 
 
+                    if (getChildrenIds().size() > 1)
+                        tuple.setShared();
                     for (int childId : getChildrenIds())
                         sendDown(tuple, childId);
 
@@ -315,11 +303,10 @@ public class MicroserviceFogDevice extends FogDevice {
             send(getId(), MicroservicePlacementConfig.PLACEMENT_INTERVAL, FogEvents.PROCESS_PRS);
             return;
         }
-        long startTime = System.nanoTime();
-
         List<PlacementRequest> placementRequests = new ArrayList<>();
 
-        if (MicroservicePlacementConfig.PR_PROCESSING_MODE == MicroservicePlacementConfig.PERIODIC) {
+        boolean batched = MicroservicePlacementConfig.PR_PROCESSING_MODE == MicroservicePlacementConfig.BATCHED;
+        if (MicroservicePlacementConfig.PR_PROCESSING_MODE == MicroservicePlacementConfig.PERIODIC || batched) {
             placementRequests.addAll(this.placementRequests);
             this.placementRequests.clear();
         } else if (MicroservicePlacementConfig.PR_PROCESSING_MODE == MicroservicePlacementConfig.SEQUENTIAL) {
@@ -327,10 +314,27 @@ public class MicroserviceFogDevice extends FogDevice {
             this.placementRequests.remove(0);
         }
 
+        if (MicroservicePlacementConfig.PARALLEL_PLACEMENT) {
+            ParallelPlacementSolver.submit(this, placementRequests);
+            return;
+        }
+
+        long startTime = System.nanoTime();
         PlacementLogicOutput placementLogicOutput = getControllerComponent().executeApplicationPlacementLogic(placementRequests);
         long endTime = System.nanoTime();
         System.out.println("Placement Algorithm Completed. Time : " + (endTime - startTime) / 1e6);
 
+        deployPlacement(placementLogicOutput);
+    }
+
+    /**
+     * Sends the modules to deploy, service discovery info and unplaced requests resulting from a placement
+     *
+     * @param placementLogicOutput output of the placement logic of this FON
+     */
+    public void deployPlacement(PlacementLogicOutput placementLogicOutput) {
+        placementLogicOutput.createModules();
+        boolean batched = MicroservicePlacementConfig.PR_PROCESSING_MODE == MicroservicePlacementConfig.BATCHED;
         Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = placementLogicOutput.getPerDevice();
         Map<Integer, List<Pair<String, Integer>>> serviceDicovery = placementLogicOutput.getServiceDiscoveryInfo();
         Map<PlacementRequest, Integer> placementRequestStatus = placementLogicOutput.getPrStatus();
@@ -343,7 +347,10 @@ public class MicroserviceFogDevice extends FogDevice {
                 fogDeviceCount++;
             placementString.append(CloudSim.getEntity(deviceID).getName() + " : ");
             for (Application app : perDevice.get(deviceID).keySet()) {
-                if (MicroservicePlacementConfig.SIMULATION_MODE == "STATIC") {
+                if (batched) {
+                    for (ModuleLaunchConfig moduleLaunchConfig : perDevice.get(deviceID).get(app))
+                        placementString.append(moduleLaunchConfig.getModule().getName() + " , ");
+                } else if (MicroservicePlacementConfig.SIMULATION_MODE == "STATIC") {
                     //ACTIVE_APP_UPDATE
                     sendNow(deviceID, FogEvents.ACTIVE_APP_UPDATE, app);
                     //APP_SUBMIT
@@ -357,7 +364,7 @@ public class MicroserviceFogDevice extends FogDevice {
                     }
                 }
             }
-            if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC") {
+            if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC" || batched) {
                 //todo
                 transmitModulesToDeply(deviceID, perDevice.get(deviceID));
             }
@@ -365,6 +372,10 @@ public class MicroserviceFogDevice extends FogDevice {
         }
         System.out.println(placementString.toString());
         for (int clientDevice : serviceDicovery.keySet()) {
+            if (batched) {
+                transmitServiceDiscoveryBatch(clientDevice, serviceDicovery.get(clientDevice));
+                continue;
+            }
             for (Pair serviceData : serviceDicovery.get(clientDevice)) {
                 if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC") {
                     transmitServiceDiscoveryData(clientDevice, serviceData);
@@ -435,14 +446,11 @@ public class MicroserviceFogDevice extends FogDevice {
         // assumed that a new object of AppModule is sent
         //todo what if an existing module is sent again in another placement cycle -> vertical scaling instead of having two vms
         AppModule module = (AppModule) ev.getData();
-        String appId = module.getAppId();
-        if (!appToModulesMap.containsKey(appId)) {
-            appToModulesMap.put(appId, new ArrayList<String>());
-        }
-        if (!appToModulesMap.get(appId).contains(module.getName())) {
-            appToModulesMap.get(appId).add(module.getName());
+        if (!isModulePlaced(module.getAppId(), module.getName())) {
+            addPlacedModule(module.getAppId(), module.getName());
             processVmCreate(ev, false);
             boolean result = getVmAllocationPolicy().allocateHostForVm(module);
+            updateModuleToVmId();
             if (result) {
                 getVmList().add(module);
                 if (module.isBeingInstantiated()) {
@@ -494,7 +502,7 @@ public class MicroserviceFogDevice extends FogDevice {
                 moduleInstanceCount.get(appModule.getAppId()).put(appModule.getName(), moduleCount - 1);
             else {
                 moduleInstanceCount.get(appModule.getAppId()).remove(appModule.getName());
-                appToModulesMap.get(appModule.getAppId()).remove(appModule.getName());
+                removePlacedModule(appModule.getAppId(), appModule.getName());
                 sendNow(getId(), FogEvents.RELEASE_MODULE, appModule);
             }
         }
@@ -532,11 +540,29 @@ public class MicroserviceFogDevice extends FogDevice {
         sendNow(getId(), FogEvents.MANAGEMENT_TUPLE_ARRIVAL, sdTuple);
     }
 
+    private void transmitServiceDiscoveryBatch(int clientDevice, List<Pair<String, Integer>> serviceData) {
+        ManagementTuple sdTuple = new ManagementTuple(FogUtils.generateTupleId(), ManagementTuple.NONE, ManagementTuple.SERVICE_DISCOVERY_BATCH);
+        sdTuple.setServiceDiscoveryBatch(serviceData);
+        sdTuple.setDestinationDeviceId(clientDevice);
+        transmitManagementTuple(sdTuple);
+    }
+
     private void transmitModulesToDeply(int deviceID, Map<Application, List<ModuleLaunchConfig>> applicationListMap) {
         ManagementTuple moduleTuple = new ManagementTuple(FogUtils.generateTupleId(), ManagementTuple.NONE, ManagementTuple.DEPLOYMENTREQUEST);
         moduleTuple.setDeployementSet(applicationListMap);
         moduleTuple.setDestinationDeviceId(deviceID);
-        sendNow(getId(), FogEvents.MANAGEMENT_TUPLE_ARRIVAL, moduleTuple);
+        transmitManagementTuple(moduleTuple);
+    }
+
+    /**
+     * Management tuples are routed to their destination in DYNAMIC mode. In STATIC mode placement related delays are
+     * not simulated, so they are delivered directly.
+     */
+    private void transmitManagementTuple(ManagementTuple tuple) {
+        if (MicroservicePlacementConfig.SIMULATION_MODE == "STATIC")
+            sendNow(tuple.getDestinationDeviceId(), FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
+        else
+            sendNow(getId(), FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
     }
 
     private void processManagementTuple(SimEvent ev) {
@@ -549,21 +575,16 @@ public class MicroserviceFogDevice extends FogDevice {
                 serviceDiscoveryAdd.put("service data", tuple.getServiceDiscoveryInfor());
                 serviceDiscoveryAdd.put("action", "ADD");
                 sendNow(getId(), FogEvents.UPDATE_SERVICE_DISCOVERY, serviceDiscoveryAdd);
+            } else if (tuple.managementTupleType == ManagementTuple.SERVICE_DISCOVERY_BATCH) {
+                for (Pair<String, Integer> serviceData : tuple.getServiceDiscoveryBatch())
+                    this.controllerComponent.addServiceDiscoveryInfo(serviceData.getFirst(), serviceData.getSecond());
             } else if (tuple.managementTupleType == ManagementTuple.DEPLOYMENTREQUEST) {
                 deployModules(tuple.getDeployementSet());
             } else if (tuple.managementTupleType == ManagementTuple.RESOURCE_UPDATE) {
                 sendNow(getId(), FogEvents.UPDATE_RESOURCE_INFO, tuple.getResourceData());
             }
         } else if (tuple.getDestinationDeviceId() != -1) {
-            int nextDeviceToSend = routingTable.get(tuple.getDestinationDeviceId());
-            if (nextDeviceToSend == parentId)
-                sendUp(tuple);
-            else if (childrenIds.contains(nextDeviceToSend))
-                sendDown(tuple, nextDeviceToSend);
-            else if (getClusterMembers().contains(nextDeviceToSend))
-                sendToCluster(tuple, nextDeviceToSend);
-            else
-                Logger.error("Routing error", "Routing table of " + getName() + "does not contain next device for destination Id" + tuple.getDestinationDeviceId());
+            routeTuple(tuple);
         } else
             Logger.error("Routing error", "Management tuple destination id is -1");
     }
@@ -656,16 +677,92 @@ public class MicroserviceFogDevice extends FogDevice {
 
     }
 
+    /**
+     * Forwards the tuple to the next device towards its destination device.
+     */
+    private void routeTuple(Tuple tuple) {
+        int destinationId = tuple.getDestinationDeviceId();
+        int nextDeviceToSend = routingTable.getNextHop(destinationId);
+        switch (routingTable.getLinkType(destinationId)) {
+            case RoutingTable.UP:
+                sendUp(tuple);
+                break;
+            case RoutingTable.DOWN:
+                sendDown(tuple, nextDeviceToSend);
+                break;
+            case RoutingTable.CLUSTER:
+                sendToCluster(tuple, nextDeviceToSend);
+                break;
+            default:
+                Logger.error("Routing error", "Routing table of " + getName() + "does not contain next device for destination Id" + destinationId);
+        }
+    }
+
     public void updateRoutingTable(int destId, int nextId) {
-        routingTable.put(destId, nextId);
+        routingTable.setNextHop(destId, nextId);
+    }
+
+    @Override
+    protected void updateClusterMembership(ClusterMembershipDelta delta) {
+        super.updateClusterMembership(delta);
+        if (routingTable == null)
+            return;
+        // routes through a former member go through the common parent instead
+        for (int memberId : delta.getRemovedMembers())
+            routingTable.replaceNextHop(memberId, parentId);
+        updateCLusterConsInRoutingTable();
     }
 
     private void updateCLusterConsInRoutingTable() {
+        if (routingTable == null)
+            return;
         for(int deviceId:clusterMembers){
-            routingTable.put(deviceId,deviceId);
+            routingTable.setNextHop(deviceId,deviceId);
         }
     }
 
+    @Override
+    public void setParentId(int parentId) {
+        super.setParentId(parentId);
+        if (routingTable != null)
+            routingTable.invalidateLinkTypes();
+    }
+
+    @Override
+    public void setChildrenIds(List<Integer> childrenIds) {
+        super.setChildrenIds(childrenIds);
+        if (routingTable != null)
+            routingTable.invalidateLinkTypes();
+    }
+
+    @Override
+    public void addChild(int childId) {
+        super.addChild(childId);
+        if (routingTable != null)
+            routingTable.invalidateLinkTypes();
+    }
+
+    @Override
+    public void removeChild(int childId) {
+        super.removeChild(childId);
+        if (routingTable != null)
+            routingTable.invalidateLinkTypes();
+    }
+
+    @Override
+    public void setClusterMembers(List<Integer> clusterList) {
+        super.setClusterMembers(clusterList);
+        if (routingTable != null)
+            routingTable.invalidateLinkTypes();
+    }
+
+    @Override
+    public void addClusterMember(int clusterMemberId) {
+        super.addClusterMember(clusterMemberId);
+        if (routingTable != null)
+            routingTable.invalidateLinkTypes();
+    }
+
     public void removeMonitoredDevice(FogDevice fogDevice) {
        controllerComponent.removeMonitoredDevice(fogDevice);
     }
@@ -1,13 +1,9 @@
 package org.fog.entities;
 
-import java.util.ArrayList;
-
-import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.application.AppEdge;
-import org.fog.application.AppLoop;
 import org.fog.application.Application;
 import org.fog.utils.*;
 import org.fog.utils.distribution.Distribution;
@@ -26,6 +22,8 @@ public class Sensor extends SimEntity{
 	private int controllerId;
 	private Application app;
 	private double latency;
+	private AppEdge edge; // edge of the tuples emitted, resolved on the first transmission
+	private SensorGroup sensorGroup;
 
 	private int transmissionStartDelay = Config.TRANSMISSION_START_DELAY;
 	
@@ -77,16 +75,12 @@ public class Sensor extends SimEntity{
 	}
 	
 	public void transmit(){
-		AppEdge _edge = null;
-		for(AppEdge edge : getApp().getEdges()){
-			if(edge.getSource().equals(getTupleType()))
-				_edge = edge;
-		}
+		AppEdge _edge = getEdge();
 		long cpuLength = (long) _edge.getTupleCpuLength();
 		long nwLength = (long) _edge.getTupleNwLength();
 		
-		Tuple tuple = new Tuple(getAppId(), FogUtils.generateTupleId(), Tuple.UP, cpuLength, 1, nwLength, outputSize, 
-				new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+		Tuple tuple = Tuple.obtain(getAppId(), FogUtils.generateTupleId(), Tuple.UP, cpuLength, 1, nwLength, outputSize, 
+				Tuple.FULL_UTILIZATION, Tuple.FULL_UTILIZATION, Tuple.FULL_UTILIZATION);
 		tuple.setUserId(getUserId());
 		tuple.setTupleType(getTupleType());
 		
@@ -102,26 +96,34 @@ public class Sensor extends SimEntity{
 		send(gatewayDeviceId, getLatency(), FogEvents.TUPLE_ARRIVAL,tuple);
 	}
 	
-	protected int updateTimings(String src, String dest){
-		Application application = getApp();
-		for(AppLoop loop : application.getLoops()){
-			if(loop.hasEdge(src, dest)){
-				
-				int tupleId = TimeKeeper.getInstance().getUniqueId();
-				if(!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-					TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-				TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-				TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-				return tupleId;
+	/**
+	 * @return the last edge of the application whose source is the tuple type of the sensor
+	 */
+	private AppEdge getEdge(){
+		if(edge == null){
+			for(AppEdge appEdge : getApp().getEdges()){
+				if(appEdge.getSource().equals(getTupleType()))
+					edge = appEdge;
 			}
 		}
-		return -1;
+		return edge;
+	}
+	
+	protected int updateTimings(String src, String dest){
+		int loopId = getApp().getLoopEdge(src, dest).getFirstLoopId();
+		if(loopId == -1)
+			return -1;
+		TimeKeeper timeKeeper = TimeKeeper.getInstance();
+		int tupleId = timeKeeper.getUniqueId();
+		timeKeeper.loopTupleEmitted(loopId, tupleId);
+		return tupleId;
 	}
 	
 	@Override
 	public void startEntity() {
 		send(gatewayDeviceId, CloudSim.getMinTimeBetweenEvents(), FogEvents.SENSOR_JOINED, geoLocation);
-		send(getId(), getTransmitDistribution().getNextValue() + transmissionStartDelay, FogEvents.EMIT_TUPLE);
+		if(sensorGroup == null)
+			send(getId(), getTransmitDistribution().getNextValue() + transmissionStartDelay, FogEvents.EMIT_TUPLE);
 	}
 
 	@Override
@@ -173,6 +175,7 @@ public class Sensor extends SimEntity{
 
 	public void setTupleType(String tupleType) {
 		this.tupleType = tupleType;
+		this.edge = null;
 	}
 
 	public String getSensorName() {
@@ -221,6 +224,7 @@ public class Sensor extends SimEntity{
 
 	public void setApp(Application app) {
 		this.app = app;
+		this.edge = null;
 	}
 
 	public Double getLatency() {
@@ -241,4 +245,18 @@ public class Sensor extends SimEntity{
 		return transmissionStartDelay;
 	}
 
+	/**
+	 * @return the group driving the emissions of the sensor, null if the sensor schedules them itself
+	 */
+	public SensorGroup getSensorGroup() {
+		return sensorGroup;
+	}
+
+	/**
+	 * Called by {@link SensorGroup#addSensor(Sensor)}.
+	 */
+	void setSensorGroup(SensorGroup sensorGroup) {
+		this.sensorGroup = sensorGroup;
+	}
+
 }
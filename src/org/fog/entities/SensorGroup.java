@@ -0,0 +1,217 @@
+package org.fog.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.fog.utils.FogEvents;
+
+/**
+ * Drives the emissions of many sensors with a single entity, instead of one EMIT_TUPLE event per
+ * sensor and transmission. Sensors added to a group do not schedule their own emissions.
+ * <p>
+ * The next emission time of every sensor is kept in a timer wheel with a few slots per sensor, each
+ * covering tickWidth; times beyond the wheel wait in an overflow queue until the wheel reaches them.
+ * The group keeps one EMIT_TUPLE event in the future event queue, for the earliest emission time,
+ * and then transmits from every sensor due at that time. Sensors due at the same time, e.g. sensors
+ * sharing a deterministic distribution, therefore cost one event in total.
+ * <p>
+ * Emission times are the ones the sensors would compute themselves: the first one is the next value
+ * of the transmit distribution plus the transmission start delay, the next ones add a new value of
+ * the distribution each time. Sensors due at the same time transmit in the order they would have
+ * without the group.
+ */
+public class SensorGroup extends SimEntity {
+
+	private static final int MIN_WHEEL_SIZE = 256;
+
+	private final int wheelSize;
+	private final double tickWidth;
+	private final List<Sensor> sensors = new ArrayList<Sensor>();
+	private final List<List<Emission>> wheel;
+	private final PriorityQueue<Emission> overflow = new PriorityQueue<Emission>(11, Emission.ORDER);
+	private long currentTick = 0;
+	private long sequence = 0;
+	private double scheduledTime = -1; // time of the pending EMIT_TUPLE event, -1 if there is none
+	private boolean started = false;
+
+	/**
+	 * Creates a group whose timer wheel covers twice the shortest mean inter-transmit time of the
+	 * sensors.
+	 */
+	public SensorGroup(String name, List<Sensor> sensors) {
+		this(name, sensors, 2 * shortestMeanInterTransmitTime(sensors) / wheelSize(sensors.size()));
+	}
+
+	/**
+	 * @param tickWidth time covered by a slot of the timer wheel
+	 */
+	public SensorGroup(String name, List<Sensor> sensors, double tickWidth) {
+		super(name);
+		this.wheelSize = wheelSize(sensors.size());
+		this.tickWidth = tickWidth > 0 ? tickWidth : 1;
+		this.wheel = new ArrayList<List<Emission>>(wheelSize);
+		for (int i = 0; i < wheelSize; i++)
+			wheel.add(new ArrayList<Emission>());
+		for (Sensor sensor : sensors)
+			addSensor(sensor);
+	}
+
+	/**
+	 * Makes the group drive the emissions of the sensor. Once the simulation is started, the first
+	 * emission of the sensor is scheduled from the current time.
+	 */
+	public void addSensor(Sensor sensor) {
+		sensors.add(sensor);
+		sensor.setSensorGroup(this);
+		if (started) {
+			schedule(sensor, CloudSim.clock() + firstDelay(sensor));
+			scheduleNextEmission();
+		}
+	}
+
+	public List<Sensor> getSensors() {
+		return sensors;
+	}
+
+	@Override
+	public void startEntity() {
+		started = true;
+		for (Sensor sensor : sensors)
+			schedule(sensor, CloudSim.clock() + firstDelay(sensor));
+		scheduleNextEmission();
+	}
+
+	@Override
+	public void processEvent(SimEvent ev) {
+		// events superseded by an earlier emission, see scheduleNextEmission, are ignored
+		if (ev.getTag() != FogEvents.EMIT_TUPLE || (Double) ev.getData() != scheduledTime)
+			return;
+		double time = scheduledTime;
+		scheduledTime = -1;
+		for (Emission emission : takeDue(time)) {
+			emission.sensor.transmit();
+			schedule(emission.sensor, time + delay(emission.sensor.getTransmitDistribution().getNextValue()));
+		}
+		scheduleNextEmission();
+	}
+
+	@Override
+	public void shutdownEntity() {
+	}
+
+	private static double firstDelay(Sensor sensor) {
+		return delay(sensor.getTransmitDistribution().getNextValue() + sensor.getTransmissionStartDelay());
+	}
+
+	/**
+	 * @return the delay of an event sent by the sensor itself, negative delays being sent as 0
+	 */
+	private static double delay(double delay) {
+		return Math.max(0, delay);
+	}
+
+	private void schedule(Sensor sensor, double time) {
+		Emission emission = new Emission(sensor, time, sequence++);
+		long tick = tick(time);
+		if (tick < currentTick + wheelSize)
+			wheel.get(slot(Math.max(tick, currentTick))).add(emission);
+		else
+			overflow.add(emission);
+	}
+
+	/**
+	 * Removes the emissions due at the given time from the wheel, in the order they were scheduled.
+	 */
+	private List<Emission> takeDue(double time) {
+		advanceTo(tick(time));
+		List<Emission> slot = wheel.get(slot(currentTick));
+		List<Emission> due = new ArrayList<Emission>();
+		List<Emission> later = new ArrayList<Emission>();
+		for (Emission emission : slot)
+			(emission.time <= time ? due : later).add(emission);
+		slot.clear();
+		slot.addAll(later);
+		Collections.sort(due, Emission.ORDER);
+		return due;
+	}
+
+	/**
+	 * Sends the EMIT_TUPLE event of the earliest emission, unless one is already pending for it.
+	 */
+	private void scheduleNextEmission() {
+		Emission next = null;
+		for (int i = 0; i < wheelSize && next == null; i++) {
+			for (Emission emission : wheel.get(slot(currentTick + i))) {
+				if (next == null || Emission.ORDER.compare(emission, next) < 0)
+					next = emission;
+			}
+		}
+		if (next == null)
+			next = overflow.peek();
+		if (next == null || (scheduledTime >= 0 && scheduledTime <= next.time))
+			return;
+		scheduledTime = next.time;
+		send(getId(), Math.max(0, next.time - CloudSim.clock()), FogEvents.EMIT_TUPLE, next.time);
+	}
+
+	/**
+	 * Turns the wheel to the given tick, moving in the overflow emissions it now covers.
+	 */
+	private void advanceTo(long tick) {
+		if (tick <= currentTick)
+			return;
+		currentTick = tick;
+		while (!overflow.isEmpty() && tick(overflow.peek().time) < currentTick + wheelSize) {
+			Emission emission = overflow.poll();
+			wheel.get(slot(Math.max(tick(emission.time), currentTick))).add(emission);
+		}
+	}
+
+	private long tick(double time) {
+		return (long) Math.floor(time / tickWidth);
+	}
+
+	private int slot(long tick) {
+		return (int) (tick & (wheelSize - 1));
+	}
+
+	private static int wheelSize(int sensorCount) {
+		return Math.max(MIN_WHEEL_SIZE, Integer.highestOneBit(Math.max(1, sensorCount)) << 2);
+	}
+
+	private static double shortestMeanInterTransmitTime(List<Sensor> sensors) {
+		double shortest = Double.MAX_VALUE;
+		for (Sensor sensor : sensors) {
+			double mean = sensor.getTransmitDistribution().getMeanInterTransmitTime();
+			if (mean > 0)
+				shortest = Math.min(shortest, mean);
+		}
+		return shortest == Double.MAX_VALUE ? MIN_WHEEL_SIZE / 2 : shortest;
+	}
+
+	private static class Emission {
+		static final Comparator<Emission> ORDER = new Comparator<Emission>() {
+			@Override
+			public int compare(Emission e1, Emission e2) {
+				int result = Double.compare(e1.time, e2.time);
+				return result != 0 ? result : Long.compare(e1.sequence, e2.sequence);
+			}
+		};
+
+		final Sensor sensor;
+		final double time;
+		final long sequence;
+
+		Emission(Sensor sensor, double time, long sequence) {
+			this.sensor = sensor;
+			this.time = time;
+			this.sequence = sequence;
+		}
+	}
+}
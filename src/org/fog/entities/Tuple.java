@@ -1,16 +1,33 @@
 package org.fog.entities;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.fog.utils.Config;
 
 public class Tuple extends Cloudlet{
 
 	public static final int UP = 1;
 	public static final int DOWN = 2;
 	public static final int ACTUATOR = 3;
+
+	/**
+	 * Utilization model of tuples using all the resources allocated to them. It has no state, so
+	 * every tuple can share it.
+	 */
+	public static final UtilizationModel FULL_UTILIZATION = new UtilizationModelFull();
+
+	private static final int MAX_POOL_SIZE = 4096;
+
+	/**
+	 * Finished tuples kept for reuse, when {@link Config#RECYCLE_TUPLES} is set
+	 */
+	private static final Deque<Tuple> pool = new ArrayDeque<Tuple>();
 	
 	private String appId;
 	
@@ -36,6 +53,12 @@ public class Tuple extends Cloudlet{
 	/* keep track of traversed microservices by tuples of type UP in microservices architecture UP -> tuple travelling towards service
 	 DOWN -> tuple travelling from service to client microservice.*/
 	protected Map<String, Integer> traversedMicroservices = new HashMap<>();
+
+	/**
+	 * Set once the same instance has been sent to several devices, in which case it is never recycled
+	 */
+	private boolean shared;
+	private boolean pooled;
 	
 	public Tuple(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
 			long cloudletFileSize, long cloudletOutputSize,
@@ -52,6 +75,58 @@ public class Tuple extends Cloudlet{
 		setDestinationDeviceId(-1);
 	}
 
+	/**
+	 * Returns a tuple with the given attributes, reusing a recycled one if available.
+	 */
+	public static Tuple obtain(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
+			long cloudletFileSize, long cloudletOutputSize,
+			UtilizationModel utilizationModelCpu,
+			UtilizationModel utilizationModelRam,
+			UtilizationModel utilizationModelBw) {
+		Tuple tuple = pool.pollFirst();
+		if (tuple == null)
+			return new Tuple(appId, cloudletId, direction, cloudletLength, pesNumber, cloudletFileSize,
+					cloudletOutputSize, utilizationModelCpu, utilizationModelRam, utilizationModelBw);
+		tuple.pooled = false;
+		tuple.reset(cloudletId, cloudletLength, pesNumber, cloudletFileSize, cloudletOutputSize,
+				utilizationModelCpu, utilizationModelRam, utilizationModelBw);
+		tuple.setAppId(appId);
+		tuple.setDirection(direction);
+		tuple.setSourceDeviceId(-1);
+		tuple.getModuleCopyMap().clear();
+		tuple.setDestinationDeviceId(-1);
+		tuple.tupleType = null;
+		tuple.destModuleName = null;
+		tuple.srcModuleName = null;
+		tuple.actualTupleId = 0;
+		tuple.actuatorId = 0;
+		tuple.sourceModuleId = 0;
+		// may still be referred to by tuples resulting from this one
+		tuple.traversedMicroservices = new HashMap<>();
+		tuple.shared = false;
+		return tuple;
+	}
+
+	/**
+	 * Makes a tuple that reached the end of its life available to {@link #obtain}, if
+	 * {@link Config#RECYCLE_TUPLES} is set. Subclasses and tuples sent to several devices are left
+	 * to the garbage collector.
+	 */
+	public static void recycle(Tuple tuple) {
+		if (!Config.RECYCLE_TUPLES || tuple.getClass() != Tuple.class || tuple.shared || tuple.pooled
+				|| pool.size() >= MAX_POOL_SIZE)
+			return;
+		tuple.pooled = true;
+		pool.addFirst(tuple);
+	}
+
+	/**
+	 * Marks this tuple as sent to several devices, so it is never recycled.
+	 */
+	public void setShared() {
+		shared = true;
+	}
+
 	public int getActualTupleId() {
 		return actualTupleId;
 	}
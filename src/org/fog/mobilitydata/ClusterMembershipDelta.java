@@ -0,0 +1,45 @@
+package org.fog.mobilitydata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Change of the cluster members of a fog device, sent by {@link IncrementalClustering} with
+ * FogEvents.UPDATE_CLUSTER_MEMBERSHIP.
+ */
+public class ClusterMembershipDelta {
+
+    private final Map<Integer, Double> addedMembersToLatency = new HashMap<>();
+    private final Map<Integer, Double> addedMembersToBandwidth = new HashMap<>();
+    private final List<Integer> removedMembers = new ArrayList<>();
+
+    public void addMember(int memberId, double latency, double bandwidth) {
+        addedMembersToLatency.put(memberId, latency);
+        addedMembersToBandwidth.put(memberId, bandwidth);
+    }
+
+    public void removeMember(int memberId) {
+        removedMembers.add(memberId);
+    }
+
+    /**
+     * @return latency of the link to each new member, new members are within communication range
+     */
+    public Map<Integer, Double> getAddedMembersToLatency() {
+        return addedMembersToLatency;
+    }
+
+    public Map<Integer, Double> getAddedMembersToBandwidth() {
+        return addedMembersToBandwidth;
+    }
+
+    public List<Integer> getRemovedMembers() {
+        return removedMembers;
+    }
+
+    public boolean isEmpty() {
+        return addedMembersToLatency.isEmpty() && removedMembers.isEmpty();
+    }
+}
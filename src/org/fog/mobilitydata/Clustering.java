@@ -8,6 +8,7 @@ import org.json.simple.JSONObject;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -16,10 +17,26 @@ import java.util.Map;
  * @author Mohammad Goudarzi
  */
 public class Clustering {
+
+    private static PropagationModel propagationModel = new DistancePropagationModel();
+
+    /**
+     * Sets the model deriving the latency and bandwidth to each cluster member from the distance to it.
+     * {@link FixedPropagationModel} gives every member the same latency and bandwidth.
+     */
+    public static void setPropagationModel(PropagationModel model) {
+        propagationModel = model;
+    }
+
+    public static PropagationModel getPropagationModel() {
+        return propagationModel;
+    }
+
     public void createClusterMembers(int parentId, int nodeId, JSONObject locatorObject) {
         List<Integer> SiblingListIDs = new ArrayList<>();
         List<FogDevice> SiblingsList = new ArrayList<FogDevice>();
         List<Integer> clusterMemberList = new ArrayList<>();
+        Map<Integer, Double> clusterMemberDistances = new HashMap<>();
         int fogId = nodeId;
         LocationHandler locatorTemp = new LocationHandler();
         locatorTemp = (LocationHandler) locatorObject.get("locationsInfo");
@@ -39,31 +56,24 @@ public class Clustering {
             SiblingsList.add(tempNode);
         }
 
-        double fogNodePositionX = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).latitude;
-        double fogNodePositionY = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).longitude;
-        Location L1 = new Location(fogNodePositionX, fogNodePositionY, 0);
+        Location L1 = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId));
+        List<FogDevice> candidates = new ArrayList<>();
+        List<Location> candidateLocations = new ArrayList<>();
         for (FogDevice fogdevice : SiblingsList) {
 
             if (fogId == fogdevice.getId()) {
                 continue;
             }
             // To check all siblings except itself
-            double tempX = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogdevice.getId())).latitude;
-            double tempY = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogdevice.getId())).longitude;
-
-            Location L2 = new Location(tempX, tempY, 0);
-
-            boolean clusterCheck = calculateInRange(L1, L2, Config.Node_Communication_RANGE);
-
-            //Clustering Policy
-            //double x = Math.pow((fogNodePositionX - tempX), 2) + Math.pow((fogNodePositionY - tempY), 2);
+            candidates.add(fogdevice);
+            candidateLocations.add(locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogdevice.getId())));
+        }
 
-            /*if (Math.sqrt(x) <= Config.Node_Communication_RANGE / 1000) {
-                clusterMemberList.add(fogdevice.getId());
-            */
-            if (clusterCheck == true) {
-                clusterMemberList.add(fogdevice.getId());
-            }
+        //Clustering Policy
+        for (int i : GeoDistance.withinRange(L1, candidateLocations, Config.Node_Communication_RANGE / 1000)) {
+            int memberId = candidates.get(i).getId();
+            clusterMemberList.add(memberId);
+            clusterMemberDistances.put(memberId, GeoDistance.distance(L1, candidateLocations.get(i)));
         }
         // Clustering Policy
 
@@ -72,41 +82,25 @@ public class Clustering {
             ((FogDevice) CloudSim.getEntity(fogId)).setSelfCluster(true);
             ((FogDevice) CloudSim.getEntity(fogId)).setIsInCluster(true);
         } else {
-            ((FogDevice) CloudSim.getEntity(fogId)).setIsInCluster(true);
-            ((FogDevice) CloudSim.getEntity(fogId)).setSelfCluster(false);
-            ((FogDevice) CloudSim.getEntity(fogId)).setClusterMembers(clusterMemberList);
+            FogDevice fogDevice = (FogDevice) CloudSim.getEntity(fogId);
+            fogDevice.setIsInCluster(true);
+            fogDevice.setSelfCluster(false);
+            fogDevice.setClusterMembers(clusterMemberList);
             Map<Integer, Double> latencyMapL2 = new HashMap<>();
+            Map<Integer, Double> bandwidthMapL2 = new HashMap<>();
             for (int id : clusterMemberList) {
-                latencyMapL2.put(id, Config.clusteringLatency);
+                FogDevice member = (FogDevice) CloudSim.getEntity(id);
+                double distance = clusterMemberDistances.get(id) * 1000;
+                latencyMapL2.put(id, propagationModel.getLatency(fogDevice, member, distance));
+                bandwidthMapL2.put(id, propagationModel.getBandwidth(fogDevice, member, distance));
             }
-            ((FogDevice) CloudSim.getEntity(fogId)).setClusterMembersToLatencyMap(latencyMapL2);
+            fogDevice.setClusterMembersToLatencyMap(latencyMapL2);
+            fogDevice.setClusterMembersToBandwidthMap(bandwidthMapL2);
+            fogDevice.setClusterMembersInRange(new HashSet<>(clusterMemberList));
 
         }
         System.out.println("The Fog Device: " + locatorTemp.instanceToDataId.get(fogId) + " with id: " + fogId + " and parent id: " + parentId +
                 " has these cluster members: " + ((FogDevice) CloudSim.getEntity(fogId)).getClusterMembers());
         return;
     }
-
-    private static boolean calculateInRange(Location loc1, Location loc2, double fogRange) {
-
-        final int R = 6371; // Radius of the earth in Kilometers
-
-        double latDistance = Math.toRadians(loc1.latitude - loc2.latitude);
-        double lonDistance = Math.toRadians(loc1.longitude - loc2.longitude);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(loc1.latitude)) * Math.cos(Math.toRadians(loc2.latitude))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        double distance = R * c; // kms
-
-
-        distance = Math.pow(distance, 2);
-
-        if (Math.sqrt(distance) <= fogRange / 1000) {
-            return true;
-        } else {
-            return false;
-        }
-
-    }
 }
@@ -7,16 +7,22 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DataParser {
 	public Map<String, Location> resourceLocationData = new HashMap<String, Location>();
 	public Map<String, Integer> levelID = new HashMap<String, Integer>();
 	public Map<Integer, ArrayList<String>> levelwiseResources = new HashMap<Integer, ArrayList<String>>();
 	public Map<String, Integer> resourceAndUserToLevel = new HashMap<String, Integer>();
-	public Map<String, Map<Double, Location>> usersLocation = new HashMap<String, Map<Double, Location>>();
+	public Map<String, Trajectory> usersLocation = new HashMap<String, Trajectory>();
 
 	public DataParser() {
 		File configFile = new File(String.format(".%sdataset%sconfig.properties", File.separator, File.separator));
@@ -59,52 +65,85 @@ public class DataParser {
 	public void parseUserData(Map<Integer, Integer> userMobilityPattern, String datasetReference) throws IOException {
 		// TODO Auto-generated method stub
 
-		for (int userID : userMobilityPattern.keySet()) {
+		// user traces are independent, so they are parsed concurrently and stored in user order
+		Map<Integer, Future<Trajectory>> traces = new LinkedHashMap<Integer, Future<Trajectory>>();
+		int threads = Math.max(1, Math.min(userMobilityPattern.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (final int userID : userMobilityPattern.keySet()) {
+				final String fileName = datasetReference + userID + ".csv";
+				final int mobilityPattern = userMobilityPattern.get(userID);
+				traces.put(userID, executor.submit(new Callable<Trajectory>() {
+					@Override
+					public Trajectory call() throws IOException {
+						return parseUserTrace(fileName, mobilityPattern);
+					}
+				}));
+			}
 
-			Map<Double, Location> tempUserLocationInfo = new HashMap<Double, Location>();
-			BufferedReader csvReader = new BufferedReader(new FileReader(datasetReference + userID + ".csv"));
-			System.out.println("The Mobility dataset used in this simulation for user: " + userID + " is: "
-					+ datasetReference + userID + ".csv");
-			String row;
-			double eventTime = References.INIT_TIME;
-			while ((row = csvReader.readLine()) != null) {
-				String[] data = row.split(",");
+			for (int userID : traces.keySet()) {
+				System.out.println("The Mobility dataset used in this simulation for user: " + userID + " is: "
+						+ datasetReference + userID + ".csv");
+				Trajectory tempUserLocationInfo;
 				try {
-					Location rl = new Location(Double.parseDouble(data[0]), Double.parseDouble(data[1]),
-							References.NOT_SET);
-					if (!tempUserLocationInfo.containsKey(eventTime))
-						tempUserLocationInfo.put(eventTime, rl);
+					tempUserLocationInfo = traces.get(userID).get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while parsing the mobility dataset of user " + userID, e);
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException)
+						throw (IOException) e.getCause();
+					throw new IOException("Failed to parse the mobility dataset of user " + userID, e.getCause());
+				}
+				usersLocation.put("usr_" + userID, tempUserLocationInfo);
+				resourceAndUserToLevel.put("usr_" + userID, levelID.get("User"));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+	}
+
+	private Trajectory parseUserTrace(String fileName, int mobilityPattern) throws IOException {
+		Trajectory tempUserLocationInfo = new Trajectory();
+		double eventTime = References.INIT_TIME;
+		try (MappedCsvReader csvReader = new MappedCsvReader(fileName)) {
+			while (csvReader.nextRow()) {
+				try {
+					double latitude = csvReader.getDouble(0);
+					double longitude = csvReader.getDouble(1);
+					if (!tempUserLocationInfo.contains(eventTime))
+						tempUserLocationInfo.add(eventTime, latitude, longitude);
 					else {
-						eventTime = nextMobilisationEvent(eventTime, userMobilityPattern.get(userID));
-						tempUserLocationInfo.put(eventTime, rl);
+						eventTime = nextMobilisationEvent(eventTime, mobilityPattern);
+						tempUserLocationInfo.add(eventTime, latitude, longitude);
 					}
 
 				} catch (NumberFormatException ex) {
 					// System.out.println("Given String is not parsable to double");
 				}
 			}
-
-			csvReader.close();
-			usersLocation.put("usr_" + userID, tempUserLocationInfo);
-			resourceAndUserToLevel.put("usr_" + userID, levelID.get("User"));
-
 		}
+		tempUserLocationInfo.trimToSize();
+		return tempUserLocationInfo;
+	}
 
+	public void parseResourceData() throws NumberFormatException, IOException {
+		parseResourceData(References.resources_path);
 	}
 
 	@SuppressWarnings("unchecked")
-	public void parseResourceData() throws NumberFormatException, IOException {
+	public void parseResourceData(String fileName) throws NumberFormatException, IOException {
 
 		int numOfLevels = levelID.get("LevelsNum");
 		ArrayList<String>[] resouresOnLevels = new ArrayList[numOfLevels];
 		for (int i = 0; i < numOfLevels; i++)
 			resouresOnLevels[i] = new ArrayList<String>();
 
-//			path to the preferred edgeResources csv
-		BufferedReader csvReader = new BufferedReader(new FileReader(
+//			path to the preferred edgeResources csv, see References.resources_path
 //				String.format(".%sdataset%sedgeResources-melbCBD-new.csv", File.separator, File.separator)));
 //						String.format(".%sdataset%sedgeResources-6_28_2022_1658951243985.csv", File.separator, File.separator)));
-		String.format(".%sdataset%sedgeResources-melbCBD.csv", File.separator, File.separator)));
+		BufferedReader csvReader = new BufferedReader(new FileReader(fileName));
 
 		String row;
 		while ((row = csvReader.readLine()) != null) {
@@ -0,0 +1,58 @@
+package org.fog.mobilitydata;
+
+import org.fog.entities.FogDevice;
+import org.fog.utils.Config;
+
+/**
+ * Wireless link between cluster members:
+ * <ul>
+ * <li>latency is Config.clusteringLatency, for medium access and processing, plus the propagation
+ * delay at the speed of light,</li>
+ * <li>bandwidth follows the Shannon capacity under log-distance path loss. The signal to noise ratio
+ * decreases as distance^-pathLossExponent and equals edgeSnr at Config.Node_Communication_RANGE. The
+ * cluster link bandwidth of the device is reached at referenceDistance and below.</li>
+ * </ul>
+ */
+public class DistancePropagationModel implements PropagationModel {
+
+    private static final double SPEED_OF_LIGHT = 299792.458; // meters per millisecond
+
+    private final double pathLossExponent;
+    private final double edgeSnr;
+    private final double referenceDistance; // meters
+
+    /**
+     * Path loss exponent 3 (urban), signal to noise ratio of 10 dB at the edge of the communication
+     * range and full bandwidth within 10 meters.
+     */
+    public DistancePropagationModel() {
+        this(3.0, 10.0, 10.0);
+    }
+
+    /**
+     * @param pathLossExponent  2 in free space, 2.7 to 5 in urban areas
+     * @param edgeSnrDb         signal to noise ratio at Config.Node_Communication_RANGE, in dB
+     * @param referenceDistance distance up to which the link has the full cluster link bandwidth, in meters
+     */
+    public DistancePropagationModel(double pathLossExponent, double edgeSnrDb, double referenceDistance) {
+        this.pathLossExponent = pathLossExponent;
+        this.edgeSnr = Math.pow(10, edgeSnrDb / 10);
+        this.referenceDistance = referenceDistance;
+    }
+
+    @Override
+    public double getLatency(FogDevice device, FogDevice clusterMember, double distance) {
+        return Config.clusteringLatency + distance / SPEED_OF_LIGHT;
+    }
+
+    @Override
+    public double getBandwidth(FogDevice device, FogDevice clusterMember, double distance) {
+        double d = Math.max(distance, referenceDistance);
+        return device.getClusterLinkBandwidth() * spectralEfficiency(d) / spectralEfficiency(referenceDistance);
+    }
+
+    private double spectralEfficiency(double distance) {
+        double snr = edgeSnr * Math.pow(Config.Node_Communication_RANGE / distance, pathLossExponent);
+        return Math.log(1 + snr) / Math.log(2);
+    }
+}
@@ -0,0 +1,21 @@
+package org.fog.mobilitydata;
+
+import org.fog.entities.FogDevice;
+import org.fog.utils.Config;
+
+/**
+ * Same latency, Config.clusteringLatency, and same bandwidth, the cluster link bandwidth of the
+ * device, whatever the distance to the cluster member.
+ */
+public class FixedPropagationModel implements PropagationModel {
+
+    @Override
+    public double getLatency(FogDevice device, FogDevice clusterMember, double distance) {
+        return Config.clusteringLatency;
+    }
+
+    @Override
+    public double getBandwidth(FogDevice device, FogDevice clusterMember, double distance) {
+        return device.getClusterLinkBandwidth();
+    }
+}
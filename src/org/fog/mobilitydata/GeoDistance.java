@@ -0,0 +1,130 @@
+package org.fog.mobilitydata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Great-circle distances between locations, in kilometers.
+ * <p>
+ * The radians and cosine of the latitude are cached by each {@link Location}, so a distance only
+ * needs two sines besides the final arc sine. Range checks do not compute the distance at all:
+ * they reject locations whose latitude alone is too far, then compare the haversine of the
+ * central angle with the one of the range, which is monotonic in the distance and so gives the
+ * same answer as comparing distances.
+ */
+public class GeoDistance {
+
+	public static final double EARTH_RADIUS = 6371; // kilometers
+
+	/**
+	 * @return haversine distance between the locations in kilometers
+	 */
+	public static double distance(Location loc1, Location loc2) {
+		return toDistance(haversine(loc1, loc2));
+	}
+
+	/**
+	 * @param range kilometers
+	 * @return whether the distance between the locations is at most range
+	 */
+	public static boolean isWithinRange(Location loc1, Location loc2, double range) {
+		return isWithinRange(loc1, loc2, range / EARTH_RADIUS, rangeHaversine(range));
+	}
+
+	/**
+	 * @return distances in kilometers from center to each location, in the order of the list
+	 */
+	public static double[] distances(Location center, List<Location> locations) {
+		double[] distances = new double[locations.size()];
+		for (int i = 0; i < distances.length; i++)
+			distances[i] = distance(center, locations.get(i));
+		return distances;
+	}
+
+	/**
+	 * @param range kilometers
+	 * @return positions in the list of the locations within range of center, in ascending order
+	 */
+	public static List<Integer> withinRange(Location center, List<Location> locations, double range) {
+		double angular = range / EARTH_RADIUS;
+		double threshold = rangeHaversine(range);
+		List<Integer> result = new ArrayList<Integer>();
+		for (int i = 0; i < locations.size(); i++) {
+			if (isWithinRange(center, locations.get(i), angular, threshold))
+				result.add(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #withinRange(Location, List, double)}, restricted to the given positions.
+	 *
+	 * @return the positions within range, in the order they are given
+	 */
+	public static List<Integer> withinRange(Location center, List<Location> locations, List<Integer> positions,
+			double range) {
+		double angular = range / EARTH_RADIUS;
+		double threshold = rangeHaversine(range);
+		List<Integer> result = new ArrayList<Integer>();
+		for (int i : positions) {
+			if (isWithinRange(center, locations.get(i), angular, threshold))
+				result.add(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the position of the location closest to center among the given positions, if it is
+	 * within range. Ties go to the lowest position.
+	 *
+	 * @param range kilometers
+	 * @return the position, or {@link References#NOT_SET} if none is within range
+	 */
+	public static int nearest(Location center, List<Location> locations, List<Integer> positions, double range) {
+		double angular = range / EARTH_RADIUS;
+		int best = References.NOT_SET;
+		double bestHaversine = rangeHaversine(range);
+		for (int i : positions) {
+			Location loc = locations.get(i);
+			if (Math.abs(center.getLatitudeRadians() - loc.getLatitudeRadians()) > angular)
+				continue;
+			double h = haversine(center, loc);
+			if (h < bestHaversine || (h == bestHaversine && (best == References.NOT_SET || i < best))) {
+				best = i;
+				bestHaversine = h;
+			}
+		}
+		return best;
+	}
+
+	private static boolean isWithinRange(Location loc1, Location loc2, double angular, double threshold) {
+		// the distance is at least the one along the meridian
+		if (Math.abs(loc1.getLatitudeRadians() - loc2.getLatitudeRadians()) > angular)
+			return false;
+		return haversine(loc1, loc2) <= threshold;
+	}
+
+	/**
+	 * @return haversine of the central angle between the locations
+	 */
+	private static double haversine(Location loc1, Location loc2) {
+		double sinLat = Math.sin((loc1.getLatitudeRadians() - loc2.getLatitudeRadians()) / 2);
+		double sinLon = Math.sin((loc1.getLongitudeRadians() - loc2.getLongitudeRadians()) / 2);
+		return sinLat * sinLat + loc1.getCosLatitude() * loc2.getCosLatitude() * sinLon * sinLon;
+	}
+
+	/**
+	 * @return haversine of the central angle of range kilometers, above 1 if range covers the whole sphere
+	 */
+	private static double rangeHaversine(double range) {
+		double angular = range / EARTH_RADIUS;
+		if (angular >= Math.PI)
+			return Double.MAX_VALUE;
+		double sin = Math.sin(angular / 2);
+		return sin * sin;
+	}
+
+	private static double toDistance(double haversine) {
+		return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(1, haversine)));
+	}
+}
@@ -0,0 +1,177 @@
+package org.fog.mobilitydata;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.FogDevice;
+import org.fog.placement.LocationHandler;
+import org.fog.utils.Config;
+import org.fog.utils.FogEvents;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps dynamic clusters current after the initial clustering (FogEvents.START_DYNAMIC_CLUSTERING),
+ * without clustering every node again.
+ * <p>
+ * As in {@link Clustering}, the cluster of a node holds its siblings within
+ * Config.Node_Communication_RANGE, so membership is symmetric. When a node is added, removed or
+ * relocated, or when its parent changes, only that node and the siblings entering or leaving its
+ * cluster are affected. Their new members are computed here and sent to them as
+ * {@link ClusterMembershipDelta}s with FogEvents.UPDATE_CLUSTER_MEMBERSHIP. Memberships are tracked
+ * here as well, so several changes at the same simulation time are consistent even though the
+ * devices apply their deltas later.
+ * <p>
+ * The clustering controllers call {@link #parentChanged(FogDevice)} when a mobile device is handed
+ * over. That only changes clusters if the level of mobile devices is one of the clustering levels,
+ * which it is not in the bundled scenarios. Nothing in the simulator adds, removes or moves fog
+ * devices at run time, so {@link #nodeAdded(FogDevice)}, {@link #nodeRemoved(FogDevice)} and
+ * {@link #nodeRelocated(FogDevice)} are there for code that does. Such code calls them after
+ * changing the topology, as each method describes, with the service returned by the controller's
+ * getClusteringService(). HotPathBenchmarks relocates gateways through {@link #nodeRelocated(FogDevice)}
+ * and checks the resulting memberships against a full {@link Clustering}.
+ */
+public class IncrementalClustering {
+
+    private final LocationHandler locator;
+    private final Set<Integer> clusteringLevels;
+    private final int senderId;
+    private final Map<Integer, Set<Integer>> clusterMembers = new HashMap<>();
+
+    /**
+     * @param clusteringLevels levels of the devices that are clustered
+     * @param senderId         id of the entity sending the deltas, usually the controller
+     */
+    public IncrementalClustering(LocationHandler locator, List<Integer> clusteringLevels, int senderId) {
+        this.locator = locator;
+        this.clusteringLevels = new HashSet<>(clusteringLevels);
+        this.senderId = senderId;
+    }
+
+    /**
+     * A device added to the topology. Call it once the device is linked with the locator and added
+     * to the children of its parent.
+     */
+    public void nodeAdded(FogDevice node) {
+        updateCluster(node);
+    }
+
+    /**
+     * A device leaving the topology. It is removed from the clusters of its members, which send the
+     * tuples still queued for it through their parent. Call it before removing the device from the
+     * children of its parent.
+     */
+    public void nodeRemoved(FogDevice node) {
+        if (!isClustered(node))
+            return;
+        Map<Integer, ClusterMembershipDelta> deltas = new LinkedHashMap<>();
+        for (int memberId : new ArrayList<>(getClusterMembers(node.getId()))) {
+            getClusterMembers(memberId).remove(node.getId());
+            delta(deltas, memberId).removeMember(node.getId());
+            delta(deltas, node.getId()).removeMember(memberId);
+        }
+        clusterMembers.remove(node.getId());
+        send(deltas);
+    }
+
+    /**
+     * A device moved to a new location. Call it after LocationHandler.relocateResource.
+     */
+    public void nodeRelocated(FogDevice node) {
+        updateCluster(node);
+    }
+
+    /**
+     * A device whose parent changed, once it is added to the children of its new parent.
+     */
+    public void parentChanged(FogDevice node) {
+        updateCluster(node);
+    }
+
+    private void updateCluster(FogDevice node) {
+        if (!isClustered(node))
+            return;
+        int nodeId = node.getId();
+        Set<Integer> previousMembers = getClusterMembers(nodeId);
+        Set<Integer> members = new LinkedHashSet<>();
+        Map<Integer, Double> distances = new HashMap<>();
+
+        FogDevice parent = (FogDevice) CloudSim.getEntity(node.getParentId());
+        if (parent != null) {
+            Location location = locator.getLocation(nodeId, CloudSim.clock());
+            List<Integer> siblingIds = new ArrayList<>();
+            List<Location> siblingLocations = new ArrayList<>();
+            for (int siblingId : parent.getChildrenIds()) {
+                if (siblingId == nodeId)
+                    continue;
+                siblingIds.add(siblingId);
+                siblingLocations.add(locator.getLocation(siblingId, CloudSim.clock()));
+            }
+            for (int i : GeoDistance.withinRange(location, siblingLocations, Config.Node_Communication_RANGE / 1000)) {
+                members.add(siblingIds.get(i));
+                distances.put(siblingIds.get(i), GeoDistance.distance(location, siblingLocations.get(i)) * 1000);
+            }
+        }
+
+        PropagationModel propagationModel = Clustering.getPropagationModel();
+        Map<Integer, ClusterMembershipDelta> deltas = new LinkedHashMap<>();
+        for (int memberId : previousMembers) {
+            if (!members.contains(memberId)) {
+                getClusterMembers(memberId).remove(nodeId);
+                delta(deltas, nodeId).removeMember(memberId);
+                delta(deltas, memberId).removeMember(nodeId);
+            }
+        }
+        for (int memberId : members) {
+            if (!previousMembers.contains(memberId)) {
+                FogDevice member = (FogDevice) CloudSim.getEntity(memberId);
+                double distance = distances.get(memberId);
+                getClusterMembers(memberId).add(nodeId);
+                delta(deltas, nodeId).addMember(memberId, propagationModel.getLatency(node, member, distance),
+                        propagationModel.getBandwidth(node, member, distance));
+                delta(deltas, memberId).addMember(nodeId, propagationModel.getLatency(member, node, distance),
+                        propagationModel.getBandwidth(member, node, distance));
+            }
+        }
+        clusterMembers.put(nodeId, members);
+        send(deltas);
+    }
+
+    private boolean isClustered(FogDevice node) {
+        return clusteringLevels.contains(node.getLevel());
+    }
+
+    /**
+     * Members known for the device, initialised from the device the first time it is affected.
+     */
+    private Set<Integer> getClusterMembers(int deviceId) {
+        Set<Integer> members = clusterMembers.get(deviceId);
+        if (members == null) {
+            members = new LinkedHashSet<>();
+            List<Integer> deviceMembers = ((FogDevice) CloudSim.getEntity(deviceId)).getClusterMembers();
+            if (deviceMembers != null)
+                members.addAll(deviceMembers);
+            clusterMembers.put(deviceId, members);
+        }
+        return members;
+    }
+
+    private static ClusterMembershipDelta delta(Map<Integer, ClusterMembershipDelta> deltas, int deviceId) {
+        ClusterMembershipDelta delta = deltas.get(deviceId);
+        if (delta == null) {
+            delta = new ClusterMembershipDelta();
+            deltas.put(deviceId, delta);
+        }
+        return delta;
+    }
+
+    private void send(Map<Integer, ClusterMembershipDelta> deltas) {
+        for (Map.Entry<Integer, ClusterMembershipDelta> delta : deltas.entrySet())
+            CloudSim.send(senderId, delta.getKey(), 0, FogEvents.UPDATE_CLUSTER_MEMBERSHIP, delta.getValue());
+    }
+}
@@ -6,11 +6,48 @@ public class Location {
 	public double latitude;
 	public double longitude;
 	public int block;
-	
+
+	// trigonometry used by GeoDistance, computed for the coordinates below
+	private double cachedLatitude = Double.NaN;
+	private double cachedLongitude = Double.NaN;
+	private double latitudeRadians;
+	private double longitudeRadians;
+	private double cosLatitude;
+
 	public Location(double latitude, double longitude, int block) {
 		this.latitude = latitude;
 		this.longitude = longitude;
 		this.block = block;
 	}
 
+	public double getLatitudeRadians() {
+		updateTrigonometry();
+		return latitudeRadians;
+	}
+
+	public double getLongitudeRadians() {
+		updateTrigonometry();
+		return longitudeRadians;
+	}
+
+	public double getCosLatitude() {
+		updateTrigonometry();
+		return cosLatitude;
+	}
+
+	/**
+	 * Computes the radians and cosine once per coordinates, again only if the public fields were changed.
+	 */
+	private void updateTrigonometry() {
+		if (latitude != cachedLatitude) {
+			latitudeRadians = Math.toRadians(latitude);
+			cosLatitude = Math.cos(latitudeRadians);
+			cachedLatitude = latitude;
+		}
+		if (longitude != cachedLongitude) {
+			longitudeRadians = Math.toRadians(longitude);
+			cachedLongitude = longitude;
+		}
+	}
+
 }
@@ -0,0 +1,205 @@
+package org.fog.mobilitydata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a comma separated file through a memory mapping, one row at a time, without creating a
+ * String per row or per field. Numeric fields are parsed straight from the mapped bytes; only
+ * values the fast path cannot convert exactly (e.g. more than 18 significant digits) fall back
+ * to {@link Double#parseDouble(String)}, so results are identical to it.
+ * <p>
+ * {@link #close()} releases the mapping, which otherwise stays until the buffer is garbage collected.
+ */
+public class MappedCsvReader implements Closeable {
+
+	private static final int MAX_COLUMNS = 16;
+
+	/** Powers of ten exactly representable as doubles. */
+	private static final double[] POW10 = new double[23];
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10;
+	}
+
+	private MappedByteBuffer buffer; // null once closed
+	private final int limit;
+	private int position = 0;
+	private int columns = 0;
+	private final int[] fieldStart = new int[MAX_COLUMNS];
+	private final int[] fieldEnd = new int[MAX_COLUMNS];
+
+	public MappedCsvReader(String fileName) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("File too large to be mapped: " + fileName);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			limit = (int) size;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Moves to the next row of the file.
+	 *
+	 * @return false once the end of the file is reached
+	 */
+	public boolean nextRow() {
+		if (position >= limit)
+			return false;
+		columns = 0;
+		int start = position;
+		int i = position;
+		for (; i < limit; i++) {
+			byte b = buffer.get(i);
+			if (b == '\n')
+				break;
+			if (b == ',') {
+				addField(start, i);
+				start = i + 1;
+			}
+		}
+		addField(start, i);
+		position = i + 1;
+		return true;
+	}
+
+	public int columns() {
+		return columns;
+	}
+
+	/**
+	 * Parses a field of the current row, following {@link Double#parseDouble(String)}.
+	 *
+	 * @throws NumberFormatException if the field is missing or is not a number
+	 */
+	public double getDouble(int column) {
+		if (column >= columns)
+			throw new NumberFormatException("Missing column " + column);
+		int start = fieldStart[column];
+		int end = fieldEnd[column];
+		while (start < end && (buffer.get(start) & 0xff) <= ' ')
+			start++;
+		while (end > start && (buffer.get(end - 1) & 0xff) <= ' ')
+			end--;
+
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0; // significant digits
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean dot = false;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b >= '0' && b <= '9') {
+				anyDigit = true;
+				if (mantissa == 0 && b == '0') {
+					if (dot)
+						exponent--;
+					continue;
+				}
+				if (++digits > 18)
+					return slowDouble(start, end);
+				mantissa = mantissa * 10 + (b - '0');
+				if (dot)
+					exponent--;
+			} else if (b == '.' && !dot) {
+				dot = true;
+			} else {
+				break;
+			}
+		}
+		if (i < end && anyDigit && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+				negativeExponent = buffer.get(i) == '-';
+				i++;
+			}
+			int value = 0;
+			boolean expDigit = false;
+			for (; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9' && value < 10000; i++) {
+				value = value * 10 + (buffer.get(i) - '0');
+				expDigit = true;
+			}
+			if (!expDigit)
+				return slowDouble(start, end);
+			exponent += negativeExponent ? -value : value;
+		}
+		if (i != end || !anyDigit || mantissa > (1L << 53) || exponent > 22 || exponent < -22)
+			return slowDouble(start, end);
+
+		double result = exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Unmaps the file. The reader must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		if (buffer != null) {
+			unmap(buffer);
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Releases the mapping through sun.misc.Unsafe.invokeCleaner on Java 9 and later, or through the
+	 * cleaner of the buffer on Java 8. If neither is accessible, the mapping is left to the garbage
+	 * collector.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException e) {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null)
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				return;
+			}
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// left to the garbage collector
+		}
+	}
+
+	private double slowDouble(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = start; i < end; i++)
+			bytes[i - start] = buffer.get(i);
+		return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1));
+	}
+
+	private void addField(int start, int end) {
+		if (columns < MAX_COLUMNS) {
+			fieldStart[columns] = start;
+			fieldEnd[columns] = end;
+			columns++;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package org.fog.mobilitydata;
+
+import org.fog.entities.FogDevice;
+
+/**
+ * Derives the latency and bandwidth of the link between two cluster members from the distance
+ * between them. Used by dynamic clustering to fill the cluster members latency and bandwidth maps of
+ * each fog device, see {@link Clustering#setPropagationModel(PropagationModel)}.
+ */
+public interface PropagationModel {
+
+    /**
+     * @param distance distance between the devices, in meters
+     * @return latency of the link from the device to the cluster member, in milliseconds
+     */
+    double getLatency(FogDevice device, FogDevice clusterMember, double distance);
+
+    /**
+     * @param distance distance between the devices, in meters
+     * @return bandwidth of the link from the device to the cluster member, in the unit of
+     * FogDevice.getClusterLinkBandwidth()
+     */
+    double getBandwidth(FogDevice device, FogDevice clusterMember, double distance);
+}
@@ -16,11 +16,15 @@ public class References {
 	public static final double lat_reference = -37.81349283433532;
 	public static final double long_reference = 144.952370512958;
 
-	// Reference dataset filename to store and retrieve users positions
-	public static final String dataset_reference = String.format(".%sdataset%slogical%susersLocation-melbCBD_",
-			File.separator, File.separator, File.separator);
-	public static final String output_path_data = String.format(".%sdataset%soutput_data.csv", File.separator,
-			File.separator);
+	// Reference dataset filename to store and retrieve users positions, overridable with -Dfog.dataset_reference
+	public static final String dataset_reference = System.getProperty("fog.dataset_reference", String.format(
+			".%sdataset%slogical%susersLocation-melbCBD_", File.separator, File.separator, File.separator));
+	// Edge resources file, overridable with -Dfog.resources_path
+	public static final String resources_path = System.getProperty("fog.resources_path",
+			String.format(".%sdataset%sedgeResources-melbCBD.csv", File.separator, File.separator));
+	// Results file, overridable with -Dfog.output_path_data so that concurrent runs do not share it
+	public static final String output_path_data = System.getProperty("fog.output_path_data",
+			String.format(".%sdataset%soutput_data.csv", File.separator, File.separator));
 	public static final String dataset_random = String.format(".%sdataset%srandomic%srandom_usersLocation-melbCBD_",
 			File.separator, File.separator, File.separator);
 	public static final int random_walk_mobility_model = 1;
@@ -0,0 +1,168 @@
+package org.fog.mobilitydata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fog.placement.LocationHandler;
+
+/**
+ * Uniform latitude/longitude grid over a fixed list of locations.
+ * Range queries only visit the grid cells overlapping the bounding box of the
+ * query circle, so answering "all nodes within r meters" no longer needs a
+ * haversine evaluation against every node.
+ * <p>
+ * Results are positions in the list the index was built from, in ascending
+ * order, so callers iterating them see nodes in the same order as a full scan.
+ */
+public class SpatialIndex {
+
+	private static final double R = GeoDistance.EARTH_RADIUS;
+	private static final double MARGIN = 1e-9; // degrees, keeps the bounding box a superset of the circle
+
+	private final List<Location> locations;
+	private final double cellRange; // meters
+	private final double cellSize; // degrees
+	private final Map<Long, List<Integer>> cells = new HashMap<Long, List<Integer>>();
+
+	/**
+	 * @param locations locations to index, addressed by their position in this list
+	 * @param cellRange expected query range in meters, used as the grid cell size
+	 */
+	public SpatialIndex(List<Location> locations, double cellRange) {
+		this.locations = new ArrayList<Location>(locations);
+		this.cellRange = cellRange > 0 ? cellRange : Math.toRadians(1.0) * R * 1000;
+		double size = Math.toDegrees(cellRange / 1000 / R);
+		this.cellSize = size > 0 ? size : 1.0;
+		for (int i = 0; i < this.locations.size(); i++) {
+			Location loc = this.locations.get(i);
+			long key = cellKey(cell(loc.latitude), cell(loc.longitude));
+			List<Integer> bucket = cells.get(key);
+			if (bucket == null) {
+				bucket = new ArrayList<Integer>();
+				cells.put(key, bucket);
+			}
+			bucket.add(i);
+		}
+	}
+
+	/**
+	 * Builds an index over the resource locations known by the given locator.
+	 */
+	public static SpatialIndex ofResources(LocationHandler locator, List<String> dataIds, double cellRange) {
+		List<Location> locs = new ArrayList<Location>(dataIds.size());
+		for (String dataId : dataIds)
+			locs.add(locator.getCoordinates(dataId));
+		return new SpatialIndex(locs, cellRange);
+	}
+
+	/**
+	 * Builds an index whose cell size follows the average spacing of the locations, which suits
+	 * nearest-neighbour queries.
+	 */
+	public static SpatialIndex of(List<Location> locations) {
+		double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		for (Location loc : locations) {
+			minLat = Math.min(minLat, loc.latitude);
+			maxLat = Math.max(maxLat, loc.latitude);
+			minLon = Math.min(minLon, loc.longitude);
+			maxLon = Math.max(maxLon, loc.longitude);
+		}
+		double span = locations.isEmpty() ? 0 : Math.max(maxLat - minLat, maxLon - minLon);
+		double cellRange = Math.toRadians(span / Math.sqrt(Math.max(1, locations.size()))) * R * 1000;
+		return new SpatialIndex(locations, cellRange);
+	}
+
+	public int size() {
+		return locations.size();
+	}
+
+	public Location getLocation(int index) {
+		return locations.get(index);
+	}
+
+	/**
+	 * Returns the positions of every indexed location whose distance to center,
+	 * as given by {@link GeoDistance#distance(Location, Location)},
+	 * is at most range meters. Positions are sorted ascending.
+	 */
+	public List<Integer> withinRange(Location center, double range) {
+		List<Integer> result = GeoDistance.withinRange(center, locations, candidates(center, range), range / 1000);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns the position of the indexed location closest to center, as given by
+	 * {@link GeoDistance#distance(Location, Location)}. Ties go to the lowest
+	 * position, as in a linear scan keeping the first minimum.
+	 *
+	 * @return the position, or {@link References#NOT_SET} if the index is empty
+	 */
+	public int nearest(Location center) {
+		if (locations.isEmpty())
+			return References.NOT_SET;
+		// Grows the search range until some location falls within it. Every location closer than
+		// the nearest one found is then also within range, so the answer is exact.
+		for (double range = cellRange;; range *= 2) {
+			int best = GeoDistance.nearest(center, locations, candidates(center, range), range / 1000);
+			if (best != References.NOT_SET || range >= Math.PI * R * 1000)
+				return best;
+		}
+	}
+
+	private List<Integer> candidates(Location center, double range) {
+		double angular = range / 1000 / R; // radians
+		double latDelta = Math.toDegrees(angular) + MARGIN;
+		double minLat = center.latitude - latDelta;
+		double maxLat = center.latitude + latDelta;
+		double sinRatio = Math.sin(angular) / center.getCosLatitude();
+		if (angular >= Math.PI / 2 || minLat <= -90 || maxLat >= 90 || sinRatio >= 1)
+			return allPositions();
+
+		double lonDelta = Math.toDegrees(Math.asin(sinRatio)) + MARGIN;
+		double minLon = center.longitude - lonDelta;
+		double maxLon = center.longitude + lonDelta;
+		if (minLon < -180 || maxLon > 180)
+			return allPositions();
+
+		int fromLat = cell(minLat), toLat = cell(maxLat);
+		int fromLon = cell(minLon), toLon = cell(maxLon);
+		List<Integer> found = new ArrayList<Integer>();
+		if ((long) (toLat - fromLat + 1) * (toLon - fromLon + 1) > cells.size()) {
+			for (Map.Entry<Long, List<Integer>> entry : cells.entrySet()) {
+				int latCell = (int) (entry.getKey() >> 32);
+				int lonCell = (int) (long) entry.getKey();
+				if (latCell >= fromLat && latCell <= toLat && lonCell >= fromLon && lonCell <= toLon)
+					found.addAll(entry.getValue());
+			}
+			return found;
+		}
+		for (int latCell = fromLat; latCell <= toLat; latCell++) {
+			for (int lonCell = fromLon; lonCell <= toLon; lonCell++) {
+				List<Integer> bucket = cells.get(cellKey(latCell, lonCell));
+				if (bucket != null)
+					found.addAll(bucket);
+			}
+		}
+		return found;
+	}
+
+	private List<Integer> allPositions() {
+		List<Integer> all = new ArrayList<Integer>(locations.size());
+		for (int i = 0; i < locations.size(); i++)
+			all.add(i);
+		return all;
+	}
+
+	private int cell(double degrees) {
+		return (int) Math.floor(degrees / cellSize);
+	}
+
+	private static long cellKey(int latCell, int lonCell) {
+		return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+	}
+}
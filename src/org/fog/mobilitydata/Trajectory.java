@@ -0,0 +1,116 @@
+package org.fog.mobilitydata;
+
+import java.util.Arrays;
+
+/**
+ * Time-indexed trace of a mobile user, stored column-wise in primitive arrays sorted by time.
+ * Adding a position at a time already in the trace replaces it, as a Map&lt;Double, Location&gt;
+ * would.
+ */
+public class Trajectory {
+
+	private double[] times;
+	private double[] latitudes;
+	private double[] longitudes;
+	private int size;
+
+	public Trajectory() {
+		this(16);
+	}
+
+	public Trajectory(int capacity) {
+		capacity = Math.max(1, capacity);
+		times = new double[capacity];
+		latitudes = new double[capacity];
+		longitudes = new double[capacity];
+	}
+
+	public void add(double time, double latitude, double longitude) {
+		int index = size;
+		if (size > 0 && time <= times[size - 1]) {
+			index = Arrays.binarySearch(times, 0, size, time);
+			if (index >= 0) {
+				latitudes[index] = latitude;
+				longitudes[index] = longitude;
+				return;
+			}
+			index = -index - 1;
+		}
+		if (size == times.length) {
+			int capacity = times.length * 2;
+			times = Arrays.copyOf(times, capacity);
+			latitudes = Arrays.copyOf(latitudes, capacity);
+			longitudes = Arrays.copyOf(longitudes, capacity);
+		}
+		if (index < size) {
+			System.arraycopy(times, index, times, index + 1, size - index);
+			System.arraycopy(latitudes, index, latitudes, index + 1, size - index);
+			System.arraycopy(longitudes, index, longitudes, index + 1, size - index);
+		}
+		times[index] = time;
+		latitudes[index] = latitude;
+		longitudes[index] = longitude;
+		size++;
+	}
+
+	/**
+	 * Releases the spare capacity once the trace is fully loaded.
+	 */
+	public void trimToSize() {
+		if (size < times.length) {
+			times = Arrays.copyOf(times, size);
+			latitudes = Arrays.copyOf(latitudes, size);
+			longitudes = Arrays.copyOf(longitudes, size);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(double time) {
+		return Arrays.binarySearch(times, 0, size, time) >= 0;
+	}
+
+	public double getTime(int index) {
+		return times[index];
+	}
+
+	public double getLatitude(int index) {
+		return latitudes[index];
+	}
+
+	public double getLongitude(int index) {
+		return longitudes[index];
+	}
+
+	/**
+	 * @return a copy of the sorted times of the trace
+	 */
+	public double[] getTimes() {
+		return Arrays.copyOf(times, size);
+	}
+
+	/**
+	 * Returns the position of the user at the given time. Times between two samples are linearly
+	 * interpolated; times outside the trace are clamped to its first or last sample.
+	 *
+	 * @return the location, or null if the trace is empty
+	 */
+	public Location getLocation(double time) {
+		if (size == 0)
+			return null;
+		int index = Arrays.binarySearch(times, 0, size, time);
+		if (index >= 0)
+			return new Location(latitudes[index], longitudes[index], References.NOT_SET);
+		int next = -index - 1;
+		if (next == 0)
+			return new Location(latitudes[0], longitudes[0], References.NOT_SET);
+		if (next == size)
+			return new Location(latitudes[size - 1], longitudes[size - 1], References.NOT_SET);
+		int previous = next - 1;
+		double ratio = (time - times[previous]) / (times[next] - times[previous]);
+		return new Location(latitudes[previous] + ratio * (latitudes[next] - latitudes[previous]),
+				longitudes[previous] + ratio * (longitudes[next] - longitudes[previous]), References.NOT_SET);
+	}
+}
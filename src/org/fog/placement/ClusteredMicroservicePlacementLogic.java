@@ -37,6 +37,10 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
     Map<Integer, Map<String, Integer>> mappedMicroservices = new HashMap<>();
     ; //mappedMicroservice
 
+    // cluster device id -> its cluster members ordered for placement, and member id -> the orderings it is part of
+    private Map<Integer, ClusterCapacityIndex> clusterIndexes = new HashMap<>();
+    private Map<Integer, List<ClusterCapacityIndex>> clusterIndexesByMember = new HashMap<>();
+
     public ClusteredMicroservicePlacementLogic(int fonID) {
         setFONId(fonID);
     }
@@ -65,6 +69,8 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
             currentModuleInstanceNum.put(dev.getId(), new HashMap<String, Integer>());
         }
 
+        clusterIndexes.clear();
+        clusterIndexesByMember.clear();
         mapModules();
         PlacementLogicOutput placement = generatePlacementMap();
         updateResources(resourceAvailability);
@@ -107,6 +113,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
         // <deviceid, < app, list of modules to deploy > this is to remove deploying same module more than once on a certain device.
         Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = new HashMap<>();
         Map<Integer, List<Pair<String, Integer>>> serviceDiscoveryInfo = new HashMap<>();
+        List<ModuleLaunchConfig> moduleCopies = new ArrayList<>();
         Map<PlacementRequest, Integer> prStatus = new HashMap<>();
         if (placement != null) {
             for (int prID : placement.keySet()) {
@@ -140,8 +147,8 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
             for (int deviceId : currentModuleInstanceNum.keySet()) {
                 for (String microservice : currentModuleInstanceNum.get(deviceId).keySet()) {
                     Application application = applicationInfo.get(moduleToApp.get(microservice));
-                    AppModule appModule = new AppModule(application.getModuleByName(microservice));
-                    ModuleLaunchConfig moduleLaunchConfig = new ModuleLaunchConfig(appModule, currentModuleInstanceNum.get(deviceId).get(microservice));
+                    ModuleLaunchConfig moduleLaunchConfig = ModuleLaunchConfig.copyOf(application.getModuleByName(microservice), currentModuleInstanceNum.get(deviceId).get(microservice));
+                    moduleCopies.add(moduleLaunchConfig);
                     if (perDevice.keySet().contains(deviceId)) {
                         if (perDevice.get(deviceId).containsKey(application)) {
                             perDevice.get(deviceId).get(application).add(moduleLaunchConfig);
@@ -161,7 +168,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
             }
         }
 
-        return new PlacementLogicOutput(perDevice, serviceDiscoveryInfo, prStatus);
+        return new PlacementLogicOutput(perDevice, serviceDiscoveryInfo, prStatus, moduleCopies);
     }
 
     public List<Integer> getClientServiceNodeIds(Application application, String
@@ -225,30 +232,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                     int deviceId = device.getId();
 
                     if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                        getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-
-                        moduleToApp.put(microservice, app.getAppId());
-
-                        if (!currentModuleMap.get(deviceId).contains(microservice))
-                            currentModuleMap.get(deviceId).add(microservice);
-
-                        mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
-
-                        //currentModuleLoad
-                        if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
-                            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
-                        else
-                            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice));
-
-
-                        //currentModuleInstance
-                        if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
-                            currentModuleInstanceNum.get(deviceId).put(microservice, 1);
-                        else
-                            currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
-
+                        placeModule(placementRequest, microservice, app, device);
                         break;
                     }
                 }
@@ -282,30 +266,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                         for (String microservice : toPlace.get(placementRequest)) {
                             // try to place
                             if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                                Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                                getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                                System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-
-                                moduleToApp.put(microservice, app.getAppId());
-
-                                if (!currentModuleMap.get(deviceId).contains(microservice))
-                                    currentModuleMap.get(deviceId).add(microservice);
-
-                                mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
-
-                                //currentModuleLoad
-                                if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
-                                    currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
-                                else
-                                    currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice));
-
-
-                                //currentModuleInstance
-                                if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
-                                    currentModuleInstanceNum.get(deviceId).put(microservice, 1);
-                                else
-                                    currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
-
+                                placeModule(placementRequest, microservice, app, device);
                                 placed.add(microservice);
                             }
                         }
@@ -329,88 +290,19 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                     if (toPlace.containsKey(placementRequest)) {
                         int clusterDeviceId = clusterNode.get(placementRequest);
                         FogDevice device = getDevice(clusterDeviceId);
-                        List<Integer> clusterDeviceIds = ((MicroserviceFogDevice) device).getClusterMembers();
-                        List<Integer> sortedClusterDevicesActive = new ArrayList<>();
-                        List<Integer> sortedClusterDevicesInactive = new ArrayList<>();
-                        for (Integer id : clusterDeviceIds) {
-                            //sort list from min to max
-                            if (currentModuleMap.get(id).size()>0 && sortedClusterDevicesActive.isEmpty())
-                                sortedClusterDevicesActive.add(id);
-                            else if(currentModuleMap.get(id).size()==0 && sortedClusterDevicesInactive.isEmpty())
-                                sortedClusterDevicesInactive.add(id);
-                            else if(currentModuleMap.get(id).size()>0){
-                                boolean isPlaced = false;
-                                for (int i = 0; i < sortedClusterDevicesActive.size(); i++) {
-                                    double sorted = resourceAvailability.get(sortedClusterDevicesActive.get(i)).get("cpu") -
-                                            getCurrentCpuLoad().get(sortedClusterDevicesActive.get(i));
-                                    double current = resourceAvailability.get(id).get("cpu") -
-                                            getCurrentCpuLoad().get(id);
-                                    if (sorted < current) {sortedClusterDevicesActive.add(i, id);
-                                        isPlaced = true;
-                                        break;
-                                    } else {
-                                        continue;
-                                    }
-                                }
-                                if (!isPlaced)
-                                    sortedClusterDevicesActive.add(id);
-                            }
-                            else{
-                                boolean isPlaced = false;
-                                for (int i = 0; i < sortedClusterDevicesInactive.size(); i++) {
-                                    double sorted = resourceAvailability.get(sortedClusterDevicesInactive.get(i)).get("cpu") -
-                                            getCurrentCpuLoad().get(sortedClusterDevicesInactive.get(i));
-                                    double current = resourceAvailability.get(id).get("cpu") -
-                                            getCurrentCpuLoad().get(id);
-                                    if (sorted < current) {sortedClusterDevicesInactive.add(i, id);
-                                        isPlaced = true;
-                                        break;
-                                    } else {
-                                        continue;
-                                    }
-                                }
-                                if (!isPlaced)
-                                    sortedClusterDevicesInactive.add(id);
-                            }
-                        }
-
-                        List<Integer> sortedClusterDevices = new ArrayList<>(sortedClusterDevicesActive);
-                        sortedClusterDevices.addAll(sortedClusterDevicesInactive);
+                        // cluster members are tried by decreasing free cpu, those already hosting modules first,
+                        // in the order they had when this placement request reached the cluster
+                        ClusterCapacityIndex clusterIndex = getClusterCapacityIndex(device);
+                        clusterIndex.beginPlacement();
                         List<String> placed = new ArrayList<>();
                         for (String microservice : toPlace.get(placementRequest)) {
-                            for (int id : sortedClusterDevices) {
-                                // try to place
-                                if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id) <= resourceAvailability.get(id).get(ControllerComponent.CPU)) {
-                                    FogDevice placedDevice = getDevice(id);
-                                    Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
-                                    getCurrentCpuLoad().put(id, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id));
-                                    System.out.println("Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
-
-                                    if (!currentModuleMap.get(id).contains(microservice))
-                                        currentModuleMap.get(id).add(microservice);
-
-                                    mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, id);
-
-                                    moduleToApp.put(microservice, app.getAppId());
-
-                                    //currentModuleLoad
-                                    if (!currentModuleLoadMap.get(id).containsKey(microservice))
-                                        currentModuleLoadMap.get(id).put(microservice, getModule(microservice, app).getMips());
-                                    else
-                                        currentModuleLoadMap.get(id).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(id).get(microservice));
-
-
-                                    //currentModuleInstance
-                                    if (!currentModuleInstanceNum.get(id).containsKey(microservice))
-                                        currentModuleInstanceNum.get(id).put(microservice, 1);
-                                    else
-                                        currentModuleInstanceNum.get(id).put(microservice, currentModuleInstanceNum.get(id).get(microservice) + 1);
-
-                                    placed.add(microservice);
-                                    break;
-                                }
+                            int id = clusterIndex.firstFit(getModule(microservice, app).getMips());
+                            if (id != -1) {
+                                placeModule(placementRequest, microservice, app, getDevice(id));
+                                placed.add(microservice);
                             }
                         }
+                        clusterIndex.endPlacement();
 
                         for (String m : placed) {
                             toPlace.get(placementRequest).remove(m);
@@ -428,6 +320,166 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
 
     }
 
+    private void placeModule(PlacementRequest placementRequest, String microservice, Application app, FogDevice device) {
+        int deviceId = device.getId();
+        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+        getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
+        System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+
+        moduleToApp.put(microservice, app.getAppId());
+
+        if (!currentModuleMap.get(deviceId).contains(microservice))
+            currentModuleMap.get(deviceId).add(microservice);
+
+        mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
+
+        //currentModuleLoad
+        if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
+            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
+        else
+            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice));
+
+
+        //currentModuleInstance
+        if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
+            currentModuleInstanceNum.get(deviceId).put(microservice, 1);
+        else
+            currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
+
+        List<ClusterCapacityIndex> indexes = clusterIndexesByMember.get(deviceId);
+        if (indexes != null) {
+            for (ClusterCapacityIndex index : indexes)
+                index.update(deviceId);
+        }
+    }
+
+    private ClusterCapacityIndex getClusterCapacityIndex(FogDevice device) {
+        ClusterCapacityIndex index = clusterIndexes.get(device.getId());
+        if (index == null) {
+            index = new ClusterCapacityIndex(((MicroserviceFogDevice) device).getClusterMembers());
+            clusterIndexes.put(device.getId(), index);
+            for (int id : ((MicroserviceFogDevice) device).getClusterMembers()) {
+                if (!clusterIndexesByMember.containsKey(id))
+                    clusterIndexesByMember.put(id, new ArrayList<ClusterCapacityIndex>());
+                clusterIndexesByMember.get(id).add(index);
+            }
+        }
+        return index;
+    }
+
+    private double freeCpu(int deviceId) {
+        return resourceAvailability.get(deviceId).get(ControllerComponent.CPU) - getCurrentCpuLoad().get(deviceId);
+    }
+
+    private boolean fits(int deviceId, double mips) {
+        return mips + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU);
+    }
+
+    /**
+     * Members of a cluster ordered for placement: devices already hosting modules first, then by decreasing free
+     * cpu, then in cluster member order. The ordering is kept up to date as modules are placed during mapModules,
+     * instead of being rebuilt for every placement request reaching the cluster.
+     * <p>
+     * During a placement (between {@link #beginPlacement()} and {@link #endPlacement()}) the devices receiving modules
+     * keep the rank they had when it began, so that modules are placed exactly as by a first fit over the ordering
+     * taken at that time.
+     */
+    private class ClusterCapacityIndex {
+        private final List<Integer> members;
+        private final Map<Integer, Integer> positions = new HashMap<>();
+        private final boolean[] inactive;
+        private final double[] free;
+        // member positions of the devices hosting modules, and of the others
+        private final TreeSet<Integer> active;
+        private final TreeSet<Integer> idle;
+        // member placed on during the current placement -> {inactive, free} when the placement began
+        private final Map<Integer, double[]> placementRanks = new HashMap<>();
+        private boolean placing = false;
+
+        ClusterCapacityIndex(List<Integer> members) {
+            this.members = new ArrayList<>(members);
+            inactive = new boolean[members.size()];
+            free = new double[members.size()];
+            Comparator<Integer> byFreeCpu = new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return compareRanks(inactive[a], free[a], a, inactive[b], free[b], b);
+                }
+            };
+            active = new TreeSet<>(byFreeCpu);
+            idle = new TreeSet<>(byFreeCpu);
+            for (int position = 0; position < this.members.size(); position++) {
+                positions.put(this.members.get(position), position);
+                add(position);
+            }
+        }
+
+        void beginPlacement() {
+            placing = true;
+        }
+
+        void endPlacement() {
+            placing = false;
+            placementRanks.clear();
+        }
+
+        void update(int deviceId) {
+            Integer position = positions.get(deviceId);
+            if (position == null)
+                return;
+            if (placing && !placementRanks.containsKey(position))
+                placementRanks.put(position, new double[]{inactive[position] ? 1 : 0, free[position]});
+            (inactive[position] ? idle : active).remove(position);
+            add(position);
+        }
+
+        /**
+         * @return the id of the first member, in placement order, with enough free cpu for the given mips, or -1
+         */
+        int firstFit(double mips) {
+            int best = -1;
+            for (int position : placementRanks.keySet()) {
+                if (fits(members.get(position), mips) && (best == -1 || isBefore(position, best)))
+                    best = position;
+            }
+            // among the members not placed on yet, only the first of each group may fit as the others have less free cpu
+            for (TreeSet<Integer> group : Arrays.asList(active, idle)) {
+                for (int position : group) {
+                    if (placementRanks.containsKey(position))
+                        continue;
+                    if (fits(members.get(position), mips) && (best == -1 || isBefore(position, best)))
+                        best = position;
+                    break;
+                }
+            }
+            return best == -1 ? -1 : members.get(best);
+        }
+
+        private boolean isBefore(int position, int other) {
+            double[] rank = placementRanks.get(position);
+            double[] otherRank = placementRanks.get(other);
+            return compareRanks(rank != null ? rank[0] == 1 : inactive[position], rank != null ? rank[1] : free[position], position,
+                    otherRank != null ? otherRank[0] == 1 : inactive[other], otherRank != null ? otherRank[1] : free[other], other) < 0;
+        }
+
+        private void add(int position) {
+            int deviceId = members.get(position);
+            inactive[position] = currentModuleMap.get(deviceId).size() == 0;
+            free[position] = freeCpu(deviceId);
+            (inactive[position] ? idle : active).add(position);
+        }
+    }
+
+    private static int compareRanks(boolean inactiveA, double freeA, int positionA, boolean inactiveB, double freeB, int positionB) {
+        if (inactiveA != inactiveB)
+            return inactiveA ? 1 : -1;
+        if (freeA > freeB)
+            return -1;
+        if (freeA < freeB)
+            return 1;
+        return Integer.compare(positionA, positionB);
+    }
+
     private FogDevice getDeviceByName(String deviceName) {
         for (FogDevice f : fogDevices) {
             if (f.getName().equals(deviceName))
@@ -9,6 +9,7 @@ import org.fog.application.Application;
 import org.fog.entities.Actuator;
 import org.fog.entities.FogDevice;
 import org.fog.entities.Sensor;
+import org.fog.mobilitydata.IncrementalClustering;
 import org.fog.mobilitydata.References;
 import org.fog.utils.*;
 import org.json.simple.JSONObject;
@@ -25,6 +26,7 @@ public class ClusteringController extends SimEntity {
     private List<Sensor> sensors;
     private List<Actuator> actuators;
     private LocationHandler locator;
+    private MobilitySchedule mobilitySchedule;
     private Map<Integer, Integer> parentReference;
 
 
@@ -33,6 +35,7 @@ public class ClusteringController extends SimEntity {
 
     private Map<String, Integer> appLaunchDelays;
     private List<Integer> clustering_levels;
+    private IncrementalClustering clusteringService;
 
 
     private Map<String, ModulePlacement> appModulePlacementPolicy;
@@ -118,6 +121,7 @@ public class ClusteringController extends SimEntity {
     @Override
     public void startEntity() {
         clusteringSubmit(clustering_levels);
+        clusteringService = new IncrementalClustering(locator, clustering_levels, getId());
 
         for (String appId : applications.keySet()) {
             if (getAppLaunchDelays().get(appId) == 0)
@@ -170,6 +174,13 @@ public class ClusteringController extends SimEntity {
         }
     }
 
+    /**
+     * @return the service keeping clusters current after the initial clustering
+     */
+    public IncrementalClustering getClusteringService() {
+        return clusteringService;
+    }
+
     public void clusteringSubmit(List Levels) {
         System.out.println(CloudSim.clock() + " Start sending Clustering Request to Fog Devices in level: " + Levels);
         for (int i = 0; i < Levels.size(); i++) {
@@ -200,6 +211,7 @@ public class ClusteringController extends SimEntity {
     @SuppressWarnings("unchecked")
     private void processMobility(SimEvent ev) {
         FogDevice fogDevice = (FogDevice) ev.getData();
+        scheduleNextMobility(fogDevice);
         FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
         FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
         System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
@@ -220,6 +232,7 @@ public class ClusteringController extends SimEntity {
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
             prevParent.removeChild(fogDevice.getId());
+            clusteringService.parentChanged(fogDevice);
             for (String applicationName : fogDevice.getActiveApplications()) {
                 migratingModules = getAppModulePlacementPolicy().get(applicationName).getModulesOnPath().get(fogDevice.getId()).get(prevParent.getId());
                 getAppModulePlacementPolicy().get(applicationName).getModulesOnPath().get(fogDevice.getId()).remove(prevParent.getId());
@@ -301,17 +314,22 @@ public class ClusteringController extends SimEntity {
     }
 
     private void processMobilityData() {
-        // TODO Auto-generated method stub
-        List<Double> timeSheet = new ArrayList<Double>();
+        mobilitySchedule = new MobilitySchedule(locator);
         for (FogDevice fogDevice : getFogDevices()) {
             if (locator.isAMobileDevice(fogDevice.getId())) {
-                timeSheet = locator.getTimeSheet(fogDevice.getId());
-                for (double timeEntry : timeSheet)
-                    send(getId(), timeEntry, FogEvents.MOBILITY_MANAGEMENT, fogDevice);
+                mobilitySchedule.addDevice(fogDevice.getId());
+                scheduleNextMobility(fogDevice);
             }
         }
     }
 
+    /**
+     * Sends the next mobility management event of the device, if its trajectory has one left.
+     */
+    private void scheduleNextMobility(FogDevice fogDevice) {
+        mobilitySchedule.sendNext(getId(), fogDevice);
+    }
+
     private void printNetworkUsageDetails() {
         System.out.println("Total network usage = " + NetworkUsageMonitor.getNetworkUsage() / Config.MAX_SIMULATION_TIME);
     }
@@ -89,6 +89,7 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
 
         Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = new HashMap<>();
         Map<Integer, List<Pair<String, Integer>>> serviceDiscoveryInfo = new HashMap<>();
+        List<ModuleLaunchConfig> moduleCopies = new ArrayList<>();
         if (placement != null) {
             for (int prID : placement.keySet()) {
                 //retrieve application
@@ -118,8 +119,8 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
             int deviceId = fogDevice.getId();
             for (String microservice : currentModuleInstanceNum.keySet()) {
                 Application application = applicationInfo.get(moduleToApp.get(microservice));
-                AppModule appModule = new AppModule(application.getModuleByName(microservice));
-                ModuleLaunchConfig moduleLaunchConfig = new ModuleLaunchConfig(appModule, currentModuleInstanceNum.get(microservice));
+                ModuleLaunchConfig moduleLaunchConfig = ModuleLaunchConfig.copyOf(application.getModuleByName(microservice), currentModuleInstanceNum.get(microservice));
+                moduleCopies.add(moduleLaunchConfig);
                 if (perDevice.keySet().contains(deviceId)) {
                     if (perDevice.get(deviceId).containsKey(application)) {
                         perDevice.get(deviceId).get(application).add(moduleLaunchConfig);
@@ -139,7 +140,7 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
 
         }
 
-        return new PlacementLogicOutput(perDevice, serviceDiscoveryInfo, prStatus);
+        return new PlacementLogicOutput(perDevice, serviceDiscoveryInfo, prStatus, moduleCopies);
     }
 
     public void mapModules() {
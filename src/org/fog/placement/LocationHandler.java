@@ -7,19 +7,30 @@ import java.util.Map;
 
 import org.fog.mobilitydata.Location;
 import org.fog.mobilitydata.DataParser;
+import org.fog.mobilitydata.GeoDistance;
 import org.fog.mobilitydata.References;
-import org.fog.utils.Config;
+import org.fog.mobilitydata.SpatialIndex;
+import org.fog.mobilitydata.Trajectory;
 
 public class LocationHandler {
 	
 	public DataParser dataObject;
 	public Map<Integer, String> instanceToDataId;
+	private Map<String, Integer> dataIdToInstanceId;
+	// per level lookups used by determineParent, built once the resources are parsed
+	private Map<Integer, List<String>> levelIndexResources;
+	private Map<Integer, SpatialIndex> levelIndexes;
+	private Map<Integer, Map<Integer, List<String>>> levelBlockResources;
 	
 
 	public LocationHandler(DataParser dataObject) {
 		// TODO Auto-generated constructor stub
 		this.dataObject = dataObject;
 		instanceToDataId = new HashMap<Integer, String>();
+		dataIdToInstanceId = new HashMap<String, Integer>();
+		levelIndexResources = new HashMap<Integer, List<String>>();
+		levelIndexes = new HashMap<Integer, SpatialIndex>();
+		levelBlockResources = new HashMap<Integer, Map<Integer, List<String>>>();
 		
 	}
 
@@ -38,22 +49,34 @@ public class LocationHandler {
 		
 	}
 	
-	public static double calculateDistance(Location loc1, Location loc2) {
-
-	    final int R = 6371; // Radius of the earth in Kilometers
-
-	    double latDistance = Math.toRadians(loc1.latitude - loc2.latitude);
-	    double lonDistance = Math.toRadians(loc1.longitude - loc2.longitude);
-	    double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-	            + Math.cos(Math.toRadians(loc1.latitude)) * Math.cos(Math.toRadians(loc2.latitude))
-	            * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-	    double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-	    double distance = R * c; // kms
-
+	/**
+	 * @return location of the fog device or mobile user at the given time
+	 */
+	public Location getLocation(int instanceId, double time) {
+		String dataId = getDataIdByInstanceID(instanceId);
+		if (getDataObject().usersLocation.containsKey(dataId))
+			return getUserLocationInfo(dataId, time);
+		return getResourceLocationInfo(dataId);
+	}
 
-	    distance = Math.pow(distance, 2);
+	/**
+	 * Moves a fog device. Parents are determined from its new location from now on. Not called by
+	 * the simulator itself; code moving a clustered device also calls IncrementalClustering.nodeRelocated.
+	 */
+	public void relocateResource(int instanceId, Location location) {
+		String dataId = getDataIdByInstanceID(instanceId);
+		getDataObject().resourceLocationData.put(dataId, location);
+		int level = getDataObject().resourceAndUserToLevel.get(dataId);
+		levelIndexResources.remove(level);
+		levelIndexes.remove(level);
+		levelBlockResources.remove(level);
+	}
 
-	    return Math.sqrt(distance);
+	/**
+	 * @return distance between the locations in kilometers, see {@link GeoDistance}
+	 */
+	public static double calculateDistance(Location loc1, Location loc2) {
+		return GeoDistance.distance(loc1, loc2);
 	}
 	
 
@@ -69,45 +92,27 @@ public class LocationHandler {
 			resourceLoc = getUserLocationInfo(dataId,time);
 		
 		int parentInstanceId = References.NOT_SET;	
-		String parentDataId = "";
 				
 	
 		if(time<References.INIT_TIME){
-			for(int i=0; i<getLevelWiseResources(parentLevel).size();i++){
-				Location potentialParentLoc = getResourceLocationInfo(getLevelWiseResources(parentLevel).get(i));
-				if(potentialParentLoc.block==resourceLoc.block) {
-					parentDataId = getLevelWiseResources(parentLevel).get(i);
-					for(int parentIdIterator: instanceToDataId.keySet())
-					{
-						if(instanceToDataId.get(parentIdIterator).equals(parentDataId))
-						{
-							parentInstanceId = parentIdIterator;
-						}
+			// the last resource of the same block that has an instance
+			List<String> blockResources = getBlockWiseResources(parentLevel).get(resourceLoc.block);
+			if(blockResources!=null){
+				for(int i=blockResources.size()-1; i>=0; i--){
+					int instanceId = getInstanceIdByDataId(blockResources.get(i));
+					if(instanceId!=References.NOT_SET){
+						parentInstanceId = instanceId;
+						break;
 					}
-				}	
+				}
 			}
 		}
 		else
 		{
-			double minmumDistance = Config.MAX_VALUE;
-			for(int i=0; i<getLevelWiseResources(parentLevel).size();i++){
-				Location potentialParentLoc = getResourceLocationInfo(getLevelWiseResources(parentLevel).get(i));
-//				System.out.println(resourceLoc.block);
-//				System.out.println(potentialParentLoc.block);
-//				System.out.printf("%s\n",getLevelWiseResources(parentLevel).get(i));
-				double distance = calculateDistance(resourceLoc, potentialParentLoc);
-					if(distance<minmumDistance){
-						parentDataId = getLevelWiseResources(parentLevel).get(i);
-						minmumDistance = distance;
-					}
-			}
-			
-			for(int parentIdIterator: instanceToDataId.keySet())
-			{
-				if(instanceToDataId.get(parentIdIterator).equals(parentDataId))
-				{
-					parentInstanceId = parentIdIterator;
-				}
+			int nearest = getLevelIndex(parentLevel).nearest(resourceLoc);
+			if(nearest!=References.NOT_SET){
+				String parentDataId = levelIndexResources.get(parentLevel).get(nearest);
+				parentInstanceId = getInstanceIdByDataId(parentDataId);
 			}
 			
 		}
@@ -115,9 +120,50 @@ public class LocationHandler {
 		return parentInstanceId;	
 	}	
 
+	/**
+	 * Builds the per level nearest-neighbour indexes and block lookups used by determineParent.
+	 * Called once the resources are parsed; levels are otherwise indexed on first use.
+	 */
+	private void buildLevelIndexes() {
+		levelIndexResources.clear();
+		levelIndexes.clear();
+		levelBlockResources.clear();
+		for(int level: getDataObject().levelwiseResources.keySet())
+			getLevelIndex(level);
+	}
+
+	private SpatialIndex getLevelIndex(int levelNo) {
+		SpatialIndex index = levelIndexes.get(levelNo);
+		if(index==null){
+			List<String> resources = new ArrayList<String>(getLevelWiseResources(levelNo));
+			List<Location> locations = new ArrayList<Location>(resources.size());
+			Map<Integer, List<String>> blocks = new HashMap<Integer, List<String>>();
+			for(String resource: resources){
+				Location loc = getResourceLocationInfo(resource);
+				locations.add(loc);
+				List<String> blockResources = blocks.get(loc.block);
+				if(blockResources==null){
+					blockResources = new ArrayList<String>();
+					blocks.put(loc.block, blockResources);
+				}
+				blockResources.add(resource);
+			}
+			index = SpatialIndex.of(locations);
+			levelIndexResources.put(levelNo, resources);
+			levelIndexes.put(levelNo, index);
+			levelBlockResources.put(levelNo, blocks);
+		}
+		return index;
+	}
+
+	private Map<Integer, List<String>> getBlockWiseResources(int levelNo) {
+		getLevelIndex(levelNo);
+		return levelBlockResources.get(levelNo);
+	}
+
 	private Location getUserLocationInfo(String dataId, double time) {
 		// TODO Auto-generated method stub
-		return getDataObject().usersLocation.get(dataId).get(time);
+		return getDataObject().usersLocation.get(dataId).getLocation(time);
 	}
 
 	private Location getResourceLocationInfo(String dataId) {
@@ -129,13 +175,26 @@ public class LocationHandler {
 	public List<Double> getTimeSheet(int instanceId) {
 		
 		String dataId = getDataIdByInstanceID(instanceId);
-		List<Double>timeSheet = new ArrayList<Double>(getDataObject().usersLocation.get(dataId).keySet());
+		double[] times = getDataObject().usersLocation.get(dataId).getTimes();
+		List<Double>timeSheet = new ArrayList<Double>(times.length);
+		for(double time: times)
+			timeSheet.add(time);
 		return timeSheet;
 	}
 
+	/**
+	 * @return the trace of the mobile user, whose times are those of getTimeSheet
+	 */
+	public Trajectory getTrajectory(int instanceId) {
+		return getDataObject().usersLocation.get(getDataIdByInstanceID(instanceId));
+	}
+
 	public void linkDataWithInstance(int instanceId, String dataID) {
 		// TODO Auto-generated method stub
-		instanceToDataId.put(instanceId, dataID);
+		String previous = instanceToDataId.put(instanceId, dataID);
+		if(previous!=null && !previous.equals(dataID) && Integer.valueOf(instanceId).equals(dataIdToInstanceId.get(previous)))
+			dataIdToInstanceId.remove(previous);
+		dataIdToInstanceId.put(dataID, instanceId);
 	}
 
 	public int getLevelID(String resourceType) {
@@ -156,6 +215,12 @@ public class LocationHandler {
 	public void parseResourceInfo() throws NumberFormatException, IOException {
 		// TODO Auto-generated method stub
 		getDataObject().parseResourceData();
+		buildLevelIndexes();
+	}
+
+	public void parseResourceInfo(String fileName) throws NumberFormatException, IOException {
+		getDataObject().parseResourceData(fileName);
+		buildLevelIndexes();
 	}
 
 	public List<String> getMobileUserDataId() {
@@ -185,6 +250,13 @@ public class LocationHandler {
 		return instanceToDataId.get(instanceID);
 	}
 	
+	public int getInstanceIdByDataId(String dataId) {
+		Integer instanceId = dataIdToInstanceId.get(dataId);
+		if(instanceId==null)
+			return References.NOT_SET;
+		return instanceId;
+	}
+	
 	public Map<Integer, String> getInstenceDataIdReferences() {
 		// TODO Auto-generated method stub
 		return instanceToDataId;
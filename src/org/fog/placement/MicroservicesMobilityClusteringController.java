@@ -11,10 +11,12 @@ import org.fog.entities.Sensor;
 import org.fog.entities.Tuple;
 import org.fog.entities.MicroserviceFogDevice;
 import org.fog.entities.PlacementRequest;
+import org.fog.mobilitydata.IncrementalClustering;
 import org.fog.mobilitydata.References;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
 import org.fog.utils.MigrationDelayMonitor;
+import org.fog.utils.ShortestPathRoutingGenerator;
 import org.fog.utils.TimeKeeper;
 import org.json.simple.JSONObject;
 
@@ -34,7 +36,10 @@ import java.util.stream.Collectors;
 public class MicroservicesMobilityClusteringController extends MicroservicesController {
 
 	private LocationHandler locator;
+
+	private MobilitySchedule mobilitySchedule;
 	private Map<Integer, Integer> parentReference;
+	private IncrementalClustering clusteringService;
 
 	protected Map<Integer, Map<String, PlacementRequest>> perClientDevicePrs = new HashMap<>(); // clientDevice ->
 	StringBuilder str = new StringBuilder();																								// <Application -> PR>
@@ -85,8 +90,10 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
 	@Override
 	public void startEntity() {
-		if (Config.ENABLE_DYNAMIC_CLUSTERING)
+		if (Config.ENABLE_DYNAMIC_CLUSTERING) {
 			clusteringSubmit(clustering_levels);
+			clusteringService = new IncrementalClustering(getLocator(), clustering_levels, getId());
+		}
 
 		super.startEntity();
 
@@ -154,6 +161,8 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 			str.append(TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
         	str.append(";");
 			System.out.println(getStringForLoopId(loopId) + " ---> "+TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+			if (TimeKeeper.getInstance().getLoopIdToLatencyHistogram().containsKey(loopId))
+				System.out.println("\t" + TimeKeeper.getInstance().getLoopIdToLatencyHistogram().get(loopId));
 		}
 //		System.out.println("=========================================");
 //		System.out.println("TUPLE CPU EXECUTION DELAY");
@@ -245,6 +254,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
 	private void processMobility(SimEvent ev) {
 		FogDevice fogDevice = (FogDevice) ev.getData();
+		scheduleNextMobility(fogDevice);
 		FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
 		FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
 		System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
@@ -269,6 +279,8 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 			newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
 			newParent.addChild(fogDevice.getId());
 			prevParent.removeChild(fogDevice.getId());
+			if (clusteringService != null)
+				clusteringService.parentChanged(fogDevice);
 
 			for (String applicationName : fogDevice.getActiveApplications()) {
 
@@ -314,7 +326,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 			// printFogDeviceChildren(prevParent.getId());
 		}
 
-		updateRoutingTable(fogDevice);
+		ShortestPathRoutingGenerator.updateRoutingTable(fogDevices, fogDevice);
 
 	}
 
@@ -363,23 +375,6 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 		}
 	}
 
-	private void updateRoutingTable(FogDevice fogDevice) {
-
-		for (FogDevice f : fogDevices) {
-			if (f.getId() != fogDevice.getId()) {
-				// for mobile device update all to parent
-				((MicroserviceFogDevice) fogDevice).updateRoutingTable(f.getId(), fogDevice.getParentId());
-
-				//// for other update route to mobile based on route to parent
-				int nextId = ((MicroserviceFogDevice) f).getRoutingTable().get(fogDevice.getParentId());
-				if (f.getId() != nextId)
-					((MicroserviceFogDevice) f).updateRoutingTable(fogDevice.getId(), nextId);
-				else
-					((MicroserviceFogDevice) f).updateRoutingTable(fogDevice.getId(), fogDevice.getId());
-			}
-		}
-	}
-
 	private void serviceDiscoveryUpdate(FogDevice fogDevice, Map<String, Integer> migratingModules,
 			String applicationName, int newParent, HashMap<String, Double> upDelays,
 			HashMap<String, Double> downDelays) {
@@ -519,17 +514,22 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 	}
 
 	private void processMobilityData() {
-		// TODO Auto-generated method stub
-		List<Double> timeSheet = new ArrayList<Double>();
+		mobilitySchedule = new MobilitySchedule(locator);
 		for (FogDevice fogDevice : fogDevices) {
 			if (locator.isAMobileDevice(fogDevice.getId())) {
-				timeSheet = locator.getTimeSheet(fogDevice.getId());
-				for (double timeEntry : timeSheet)
-					send(getId(), timeEntry, FogEvents.MOBILITY_MANAGEMENT, fogDevice);
+				mobilitySchedule.addDevice(fogDevice.getId());
+				scheduleNextMobility(fogDevice);
 			}
 		}
 	}
 
+	/**
+	 * Sends the next mobility management event of the device, if its trajectory has one left.
+	 */
+	private void scheduleNextMobility(FogDevice fogDevice) {
+		mobilitySchedule.sendNext(getId(), fogDevice);
+	}
+
 	public void clusteringSubmit(List Levels) {
 		System.out.println(CloudSim.clock() + " Start sending Clustering Request to Fog Devices in level: " + Levels);
 		System.out.println("Cluster size: " + Levels.size());
@@ -549,6 +549,13 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
 	}
 
+	/**
+	 * @return the service keeping dynamic clusters current, null if dynamic clustering is disabled
+	 */
+	public IncrementalClustering getClusteringService() {
+		return clusteringService;
+	}
+
 	public LocationHandler getLocator() {
 		return locator;
 	}
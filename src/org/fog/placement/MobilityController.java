@@ -34,6 +34,7 @@ public class MobilityController extends SimEntity{
 	private List<Sensor> sensors;
 	private List<Actuator> actuators;
 	private LocationHandler locator;
+	private MobilitySchedule mobilitySchedule;
 	private Map<Integer, Integer> parentReference;
 
 
@@ -175,6 +176,7 @@ public class MobilityController extends SimEntity{
 	private void processMobility(SimEvent ev) {
 		// TODO Auto-generated method stub
 		FogDevice fogDevice = (FogDevice) ev.getData();
+		scheduleNextMobility(fogDevice);
 		FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
 		FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(),CloudSim.clock()));
 		System.out.println(CloudSim.clock()+" Starting Mobility Management for "+fogDevice.getName());
@@ -264,17 +266,22 @@ public class MobilityController extends SimEntity{
 	}
 
 	private void processMobilityData() {
-		// TODO Auto-generated method stub
-		List<Double>timeSheet = new ArrayList<Double>();
+		mobilitySchedule = new MobilitySchedule(locator);
 		for(FogDevice fogDevice : getFogDevices()){
 			if(locator.isAMobileDevice(fogDevice.getId())) {
-				timeSheet = locator.getTimeSheet(fogDevice.getId());
-				for(double timeEntry:timeSheet)
-					send(getId(), timeEntry, FogEvents.MOBILITY_MANAGEMENT,fogDevice);
+				mobilitySchedule.addDevice(fogDevice.getId());
+				scheduleNextMobility(fogDevice);
 			}
 		}
 	}
 
+	/**
+	 * Sends the next mobility management event of the device, if its trajectory has one left.
+	 */
+	private void scheduleNextMobility(FogDevice fogDevice) {
+		mobilitySchedule.sendNext(getId(), fogDevice);
+	}
+
 	private void printNetworkUsageDetails() {
 		System.out.println("Total network usage = "+NetworkUsageMonitor.getNetworkUsage()/Config.MAX_SIMULATION_TIME);		
 	}
@@ -0,0 +1,68 @@
+package org.fog.placement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.FogDevice;
+import org.fog.mobilitydata.Trajectory;
+import org.fog.utils.FogEvents;
+
+/**
+ * Mobility management times of the mobile devices, read from their trajectories one at a time.
+ * <p>
+ * A controller only keeps the next FogEvents.MOBILITY_MANAGEMENT event of each device in the
+ * future event queue, and schedules the following one when it is processed, so the queue holds
+ * one mobility event per device instead of the whole traces. Times of the traces are relative to
+ * the start of the schedule, as when they were all sent at once.
+ * <p>
+ * The serials of all the events of a trace are reserved when the device is added (see
+ * CloudSim.reserveSerials), so events with the same time are processed in the same order as when
+ * every trace was sent at once: mobility events in the order the devices were added, before the
+ * events of that time sent later by any entity.
+ */
+public class MobilitySchedule {
+
+	private final LocationHandler locator;
+	private final double startTime;
+	private final Map<Integer, Trajectory> trajectories;
+	private final Map<Integer, Integer> nextEntries; // position in the trajectory of the next event
+	private final Map<Integer, Long> firstSerials; // serial reserved for the first event of the trajectory
+
+	public MobilitySchedule(LocationHandler locator) {
+		this.locator = locator;
+		this.startTime = CloudSim.clock();
+		this.trajectories = new HashMap<Integer, Trajectory>();
+		this.nextEntries = new HashMap<Integer, Integer>();
+		this.firstSerials = new HashMap<Integer, Long>();
+	}
+
+	/**
+	 * Starts reading the trajectory of a mobile device, and reserves the serials of its events.
+	 */
+	public void addDevice(int deviceId) {
+		Trajectory trajectory = locator.getTrajectory(deviceId);
+		trajectories.put(deviceId, trajectory);
+		nextEntries.put(deviceId, 0);
+		firstSerials.put(deviceId, CloudSim.reserveSerials(trajectory.size()));
+	}
+
+	/**
+	 * Consumes the next mobility management time of the device, and sends its event to the controller.
+	 *
+	 * @return false once the trajectory is exhausted
+	 */
+	public boolean sendNext(int controllerId, FogDevice fogDevice) {
+		int deviceId = fogDevice.getId();
+		Trajectory trajectory = trajectories.get(deviceId);
+		Integer next = nextEntries.get(deviceId);
+		if (trajectory == null || next >= trajectory.size())
+			return false;
+		nextEntries.put(deviceId, next + 1);
+		// negative trace times are sent now, as SimEntity.send does with negative delays
+		double time = Math.max(startTime, startTime + trajectory.getTime(next));
+		CloudSim.sendReserved(controllerId, controllerId, Math.max(CloudSim.clock(), time),
+				FogEvents.MOBILITY_MANAGEMENT, fogDevice, firstSerials.get(deviceId) + next);
+		return true;
+	}
+}
@@ -0,0 +1,156 @@
+package org.fog.placement;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.MicroserviceFogDevice;
+import org.fog.entities.PlacementRequest;
+import org.fog.utils.FogEvents;
+import org.fog.utils.MicroservicePlacementConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Solves the placement problems of several FONs concurrently (see MicroservicePlacementConfig.PARALLEL_PLACEMENT).
+ * <p>
+ * Each FON has its own placement logic, resource availability info and monitored devices, so the placement requests
+ * processed by different FONs at the same simulation time are independent. They are collected while the events of
+ * that time are processed, then solved on a ForkJoinPool by the first FON that submitted requests. Outputs are
+ * deployed, and what each placement logic printed is written, in submission order, so the simulation output is the
+ * same as with sequential placement.
+ * <p>
+ * Solving must not change any state shared between FONs. In particular, placement logics only plan the modules to
+ * launch (see ModuleLaunchConfig.copyOf): the modules, and their entity ids, are created when the output is deployed.
+ */
+public class ParallelPlacementSolver {
+
+    private static List<MicroserviceFogDevice> pendingFons = new ArrayList<>();
+    private static List<List<PlacementRequest>> pendingRequests = new ArrayList<>();
+    private static ForkJoinPool pool;
+
+    /**
+     * Queues the placement requests of a FON, to be solved with those of the other FONs processing placement
+     * requests at the current simulation time.
+     */
+    public static void submit(MicroserviceFogDevice fon, List<PlacementRequest> placementRequests) {
+        pendingFons.add(fon);
+        pendingRequests.add(placementRequests);
+        if (pendingFons.size() == 1)
+            CloudSim.send(fon.getId(), fon.getId(), 0, FogEvents.SOLVE_PLACEMENTS, null);
+    }
+
+    public static void solvePending() {
+        final List<MicroserviceFogDevice> fons = pendingFons;
+        final List<List<PlacementRequest>> requests = pendingRequests;
+        pendingFons = new ArrayList<>();
+        pendingRequests = new ArrayList<>();
+
+        List<Placement> placements = new ArrayList<>();
+        for (int i = 0; i < fons.size(); i++)
+            placements.add(new Placement(fons.get(i), requests.get(i)));
+
+        if (placements.size() == 1) {
+            placements.get(0).solve();
+        } else {
+            PrintStream out = System.out;
+            System.setOut(new PrintStream(new ThreadOutputStream(out), true));
+            try {
+                List<Future<Placement>> results = getPool().invokeAll(placements);
+                for (Future<Placement> result : results)
+                    result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while solving placements", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Placement failed", e.getCause());
+            } finally {
+                System.setOut(out);
+            }
+        }
+
+        for (Placement placement : placements) {
+            System.out.print(placement.output.toString());
+            System.out.println("Placement Algorithm Completed. Time : " + placement.time / 1e6);
+            placement.fon.deployPlacement(placement.placementLogicOutput);
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null)
+            pool = new ForkJoinPool(Math.max(1, MicroservicePlacementConfig.PARALLEL_PLACEMENT_THREADS));
+        return pool;
+    }
+
+    private static class Placement implements Callable<Placement> {
+        private final MicroserviceFogDevice fon;
+        private final List<PlacementRequest> placementRequests;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private PlacementLogicOutput placementLogicOutput;
+        private long time;
+
+        Placement(MicroserviceFogDevice fon, List<PlacementRequest> placementRequests) {
+            this.fon = fon;
+            this.placementRequests = placementRequests;
+        }
+
+        void solve() {
+            long startTime = System.nanoTime();
+            placementLogicOutput = fon.getControllerComponent().executeApplicationPlacementLogic(placementRequests);
+            time = System.nanoTime() - startTime;
+        }
+
+        @Override
+        public Placement call() {
+            ThreadOutputStream.buffer.set(output);
+            try {
+                solve();
+            } finally {
+                ThreadOutputStream.buffer.remove();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Writes to the buffer of the placement solved by the current thread, if any.
+     */
+    private static class ThreadOutputStream extends OutputStream {
+        private static final ThreadLocal<ByteArrayOutputStream> buffer = new ThreadLocal<>();
+        private final OutputStream out;
+
+        ThreadOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ByteArrayOutputStream placementOutput = buffer.get();
+            if (placementOutput != null)
+                placementOutput.write(b);
+            else
+                out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteArrayOutputStream placementOutput = buffer.get();
+            if (placementOutput != null)
+                placementOutput.write(b, off, len);
+            else
+                out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer.get() == null)
+                out.flush();
+        }
+    }
+}
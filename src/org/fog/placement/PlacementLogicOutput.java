@@ -5,6 +5,7 @@ import org.fog.application.Application;
 import org.fog.entities.PlacementRequest;
 import org.fog.utils.ModuleLaunchConfig;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,12 +25,33 @@ public class PlacementLogicOutput {
     //Integer indicates next device to send the placement request (-1 for finished, or device id for others )
     Map<PlacementRequest,Integer> prStatus = new HashMap<>();
 
+    // launch configs of perDevice whose module is still to be created, in the order the placement logic made them
+    List<ModuleLaunchConfig> moduleCopies = new ArrayList<>();
+
     public PlacementLogicOutput(Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice, Map<Integer, List<Pair<String, Integer>>> serviceDiscoveryInfo, Map<PlacementRequest,Integer> prStatus) {
         this.perDevice = perDevice;
         this.serviceDiscoveryInfo = serviceDiscoveryInfo;
         this.prStatus = prStatus;
     }
 
+    /**
+     * @param moduleCopies launch configs made with ModuleLaunchConfig.copyOf, see {@link #createModules()}
+     */
+    public PlacementLogicOutput(Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice, Map<Integer, List<Pair<String, Integer>>> serviceDiscoveryInfo, Map<PlacementRequest,Integer> prStatus, List<ModuleLaunchConfig> moduleCopies) {
+        this(perDevice, serviceDiscoveryInfo, prStatus);
+        this.moduleCopies = moduleCopies;
+    }
+
+    /**
+     * Creates the modules to launch, and so takes their entity ids, in the order the placement logic planned them.
+     * Placement logics only plan the copies, so that they can run concurrently (see ParallelPlacementSolver) and the
+     * ids still do not depend on thread scheduling.
+     */
+    public void createModules() {
+        for (ModuleLaunchConfig moduleLaunchConfig : moduleCopies)
+            moduleLaunchConfig.createModule();
+    }
+
     public Map<Integer, List<Pair<String, Integer>>> getServiceDiscoveryInfo() {
         return serviceDiscoveryInfo;
     }
@@ -0,0 +1,111 @@
+package org.fog.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Minimal benchmark harness for the simulator hot paths, in the spirit of JMH but without its
+ * dependency: every benchmark runs a few warmup iterations, then measured iterations, and the value
+ * it returns is kept so the JIT cannot discard the work.
+ */
+public class Benchmark {
+
+	public static int warmupIterations = 3;
+	public static int measurementIterations = 5;
+
+	private static volatile Object sink;
+
+	/**
+	 * Runs and reports a benchmark.
+	 *
+	 * @param name       name of the measured operation
+	 * @param params     description of the parameters, e.g. the number of devices and users
+	 * @param operations number of operations done by one call of task, used to report the time per operation
+	 * @param task       one iteration of the benchmark
+	 */
+	public static void measure(String name, String params, long operations, Callable<Object> task) throws Exception {
+		for (int i = 0; i < warmupIterations; i++)
+			sink = task.call();
+		report(name, params, operations, time(measurementIterations, task));
+	}
+
+	/**
+	 * Same as {@link #measure(String, String, long, Callable)}, for a task whose state is set up again,
+	 * untimed, before every call.
+	 */
+	public static void measure(String name, String params, long operations, Fixture fixture) throws Exception {
+		for (int i = 0; i < warmupIterations; i++) {
+			fixture.setUp();
+			sink = fixture.run();
+			fixture.tearDown();
+		}
+		double[] times = new double[measurementIterations];
+		for (int i = 0; i < measurementIterations; i++) {
+			fixture.setUp();
+			long start = System.nanoTime();
+			sink = fixture.run();
+			times[i] = System.nanoTime() - start;
+			fixture.tearDown();
+		}
+		report(name, params, operations, times);
+	}
+
+	/**
+	 * Same as {@link #measure(String, String, long, Callable)}, without warmup, for tasks that fork a
+	 * new JVM on every call.
+	 */
+	public static void measureCold(String name, String params, long operations, Callable<Object> task)
+			throws Exception {
+		report(name, params, operations, time(measurementIterations, task));
+	}
+
+	private static double[] time(int iterations, Callable<Object> task) throws Exception {
+		double[] times = new double[iterations];
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			sink = task.call();
+			times[i] = System.nanoTime() - start;
+		}
+		return times;
+	}
+
+	private static void report(String name, String params, long operations, double[] times) {
+		double mean = 0, min = Double.MAX_VALUE;
+		for (double t : times) {
+			mean += t / times.length;
+			min = Math.min(min, t);
+		}
+		double deviation = 0;
+		for (double t : times)
+			deviation += (t - mean) * (t - mean) / times.length;
+		deviation = Math.sqrt(deviation);
+		System.out.println(String.format("%-45s %-22s %14.3f us/op  +- %.3f  (min %.3f, %d ops x %d)", name, params,
+				mean / operations / 1000, deviation / operations / 1000, min / operations / 1000, operations,
+				times.length));
+	}
+
+	/**
+	 * One iteration of a benchmark, with the state it consumes: only {@link #run()} is timed.
+	 */
+	public static abstract class Fixture {
+
+		public void setUp() throws Exception {
+		}
+
+		public abstract Object run() throws Exception;
+
+		public void tearDown() throws Exception {
+		}
+	}
+
+	/**
+	 * Parses a comma separated list of integers.
+	 */
+	public static List<Integer> parseList(String value) {
+		List<Integer> list = new ArrayList<Integer>();
+		for (String s : value.split(","))
+			list.add(Integer.parseInt(s.trim()));
+		return list;
+	}
+}
@@ -0,0 +1,502 @@
+package org.fog.test.benchmark;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.FutureEventQueue;
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.HeapFutureQueue;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.fog.application.AppEdge;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.entities.ControllerComponent;
+import org.fog.entities.FogBroker;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PlacementRequest;
+import org.fog.entities.Tuple;
+import org.fog.mobilitydata.Clustering;
+import org.fog.mobilitydata.IncrementalClustering;
+import org.fog.mobilitydata.Location;
+import org.fog.mobilitydata.References;
+import org.fog.placement.ClusteredMicroservicePlacementLogic;
+import org.fog.placement.LocationHandler;
+import org.fog.test.perfeval.MicroserviceApp_RandomMobility_Clustering;
+import org.fog.utils.FogEvents;
+import org.fog.utils.FogUtils;
+import org.fog.utils.RoutingTable;
+import org.fog.utils.Config;
+import org.fog.utils.ShortestPathRoutingGenerator;
+import org.json.simple.JSONObject;
+
+/**
+ * Benchmarks of the simulator hot paths, on synthetic topologies of every combination of gateway
+ * and user counts (see {@link SyntheticTopology}):
+ * <ul>
+ * <li>{@link CloudSim#runClockTick()} with each future event queue implementation,</li>
+ * <li>{@link LocationHandler#determineParent(int, double)},</li>
+ * <li>{@link ShortestPathRoutingGenerator#generateRoutingTable(List)},</li>
+ * <li>{@link FogDevice#processTupleArrival(SimEvent)}, with prebuilt tuples sent by every user to
+ * the gateway it starts under, each gateway running a processing module; the time per tuple
+ * includes its execution,</li>
+ * <li>{@link ClusteredMicroservicePlacementLogic#run(List, Map, Map, List)}, on one prebuilt
+ * placement request per user,</li>
+ * <li>{@link IncrementalClustering#nodeRelocated(FogDevice)}, moving gateways next to other gateways;
+ * the time per move includes queuing the membership deltas, which the devices apply afterwards, and
+ * the memberships are then checked against a full {@link Clustering} of the gateways,</li>
+ * <li>a whole run of {@link MicroserviceApp_RandomMobility_Clustering}, forked in a new JVM.</li>
+ * </ul>
+ * Usage: <tt>HotPathBenchmarks [-devices 100,1000] [-users 20,100] [-warmup 3] [-iterations 5]
+ * [-scenario true|false]</tt>, from the directory holding the dataset.
+ */
+public class HotPathBenchmarks {
+
+	private static final double TICK_SIMULATION_TIME = 1000;
+
+	private static final String APP_ID = "benchmark";
+	private static final int TUPLES_PER_USER = 100;
+	private static final double TUPLE_INTERVAL = 1; // between the tuples of a user
+	private static final double TUPLES_START = 1; // once the modules are deployed
+	private static final double TUPLES_DRAIN = 10; // for the last tuples to complete
+	private static final long TUPLE_CPU_LENGTH = 1000;
+	private static final long TUPLE_NW_LENGTH = 500;
+
+	private static final int RELOCATIONS = 100;
+	private static final double METERS_PER_DEGREE = 111320;
+
+	// swallows what the simulation prints while benchmarked
+	private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+	});
+
+	public static void main(String[] args) throws Exception {
+		List<Integer> devices = Benchmark.parseList("100,1000");
+		List<Integer> users = Benchmark.parseList("20,100");
+		boolean scenario = true;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-devices"))
+				devices = Benchmark.parseList(args[i + 1]);
+			else if (args[i].equals("-users"))
+				users = Benchmark.parseList(args[i + 1]);
+			else if (args[i].equals("-warmup"))
+				Benchmark.warmupIterations = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-iterations"))
+				Benchmark.measurementIterations = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-scenario"))
+				scenario = Boolean.parseBoolean(args[i + 1]);
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		Log.disable();
+
+		for (int deviceCount : devices) {
+			for (int userCount : users) {
+				String params = "devices=" + deviceCount + " users=" + userCount;
+				SyntheticTopology topology = new SyntheticTopology(deviceCount, userCount, 42);
+
+				benchmarkClockTick(FutureQueue.class, params, deviceCount + userCount);
+				benchmarkClockTick(HeapFutureQueue.class, params, deviceCount + userCount);
+				benchmarkDetermineParent(params, topology);
+				benchmarkRoutingTable(params, topology);
+				benchmarkTupleArrival(params, topology);
+				benchmarkClusteredPlacement(params, topology);
+				benchmarkIncrementalClustering(params, topology);
+				if (scenario)
+					benchmarkScenario(params, topology);
+			}
+		}
+	}
+
+	/**
+	 * Hold model: every entity keeps one event scheduled to itself, so the future event queue holds
+	 * a constant number of pending events while the simulation runs.
+	 */
+	private static void benchmarkClockTick(final Class<? extends FutureEventQueue> type, String params,
+			final int entities) throws Exception {
+		final long[] events = new long[1];
+		Callable<Object> simulation = new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				Class<? extends FutureEventQueue> previous = CloudSim.getFutureQueueType();
+				CloudSim.setFutureQueueType(type);
+				try {
+					CloudSim.init(1, Calendar.getInstance(), false);
+					List<HoldEntity> holders = new ArrayList<HoldEntity>();
+					for (int i = 0; i < entities; i++)
+						holders.add(new HoldEntity("holder_" + i, i));
+					CloudSim.terminateSimulation(TICK_SIMULATION_TIME);
+					CloudSim.startSimulation();
+					long processed = 0;
+					for (HoldEntity holder : holders)
+						processed += holder.processed;
+					events[0] = processed;
+					return processed;
+				} finally {
+					CloudSim.setFutureQueueType(previous);
+				}
+			}
+		};
+		simulation.call(); // counts the events of one simulation
+		Benchmark.measure("CloudSim.runClockTick " + type.getSimpleName(), params, events[0], simulation);
+	}
+
+	private static void benchmarkDetermineParent(String params, SyntheticTopology topology) throws Exception {
+		final LocationHandler locator = topology.createLocator();
+		final List<Integer> mobiles = new ArrayList<Integer>();
+		final List<List<Double>> timeSheets = new ArrayList<List<Double>>();
+		int instanceId = 0;
+		for (int level = 0; level <= locator.getLevelID("Gateway"); level++) {
+			for (String dataId : locator.getLevelWiseResources(level))
+				locator.linkDataWithInstance(instanceId++, dataId);
+		}
+		long queries = 0;
+		for (String dataId : locator.getMobileUserDataId()) {
+			locator.linkDataWithInstance(instanceId, dataId);
+			mobiles.add(instanceId);
+			timeSheets.add(locator.getTimeSheet(instanceId));
+			queries += timeSheets.get(timeSheets.size() - 1).size();
+			instanceId++;
+		}
+		Benchmark.measure("LocationHandler.determineParent", params, queries, new Callable<Object>() {
+			@Override
+			public Object call() {
+				long sum = 0;
+				for (int i = 0; i < mobiles.size(); i++) {
+					for (double time : timeSheets.get(i))
+						sum += locator.determineParent(mobiles.get(i), time);
+				}
+				return sum;
+			}
+		});
+	}
+
+	private static void benchmarkRoutingTable(String params, SyntheticTopology topology) throws Exception {
+		CloudSim.init(1, Calendar.getInstance(), false);
+		final List<FogDevice> fogDevices = topology.createFogDevices(topology.createLocator());
+		Benchmark.measure("ShortestPathRoutingGenerator", params + " n=" + fogDevices.size(), 1,
+				new Callable<Object>() {
+					@Override
+					public Object call() {
+						Map<Integer, RoutingTable> routing = ShortestPathRoutingGenerator
+								.generateRoutingTable(fogDevices);
+						return routing.size();
+					}
+				});
+	}
+
+	private static void benchmarkTupleArrival(String params, final SyntheticTopology topology) throws Exception {
+		Benchmark.measure("FogDevice.processTupleArrival", params, (long) topology.getUsers() * TUPLES_PER_USER,
+				new Benchmark.Fixture() {
+					private double end;
+
+					@Override
+					public void setUp() throws Exception {
+						PrintStream out = System.out;
+						System.setOut(DISCARD);
+						try {
+							CloudSim.init(1, Calendar.getInstance(), false);
+							FogBroker broker = new FogBroker("broker");
+							Application application = createApplication(broker.getId());
+							List<FogDevice> fogDevices = topology.createFogDevices(topology.createLocator());
+							List<FogDevice> mobiles = new ArrayList<FogDevice>();
+							for (FogDevice fogDevice : fogDevices) {
+								if (fogDevice.getLevel() == 2) {
+									CloudSim.send(broker.getId(), fogDevice.getId(), 0, FogEvents.APP_SUBMIT, application);
+									CloudSim.send(broker.getId(), fogDevice.getId(), 0, FogEvents.LAUNCH_MODULE,
+											new AppModule(application.getModuleByName("processingModule")));
+								} else if (fogDevice.getLevel() == 3) {
+									mobiles.add(fogDevice);
+								}
+							}
+							// the users send in turn, at regular intervals
+							for (int i = 0; i < TUPLES_PER_USER; i++) {
+								for (int j = 0; j < mobiles.size(); j++) {
+									double time = TUPLES_START + (i + (double) j / mobiles.size()) * TUPLE_INTERVAL;
+									CloudSim.send(broker.getId(), mobiles.get(j).getParentId(), time,
+											FogEvents.TUPLE_ARRIVAL, createTuple(broker.getId(), mobiles.get(j)));
+								}
+							}
+							end = TUPLES_START + TUPLES_PER_USER * TUPLE_INTERVAL + TUPLES_DRAIN;
+
+							CloudSim.runStart();
+							while (CloudSim.clock() < TUPLES_START)
+								CloudSim.runClockTick();
+						} finally {
+							System.setOut(out);
+						}
+					}
+
+					@Override
+					public Object run() {
+						PrintStream out = System.out;
+						System.setOut(DISCARD);
+						try {
+							while (CloudSim.clock() < end && !CloudSim.runClockTick())
+								;
+							return CloudSim.clock();
+						} finally {
+							System.setOut(out);
+						}
+					}
+
+					@Override
+					public void tearDown() {
+						CloudSim.finishSimulation();
+					}
+				});
+	}
+
+	private static void benchmarkClusteredPlacement(String params, SyntheticTopology topology) throws Exception {
+		CloudSim.init(1, Calendar.getInstance(), false);
+		FogBroker broker = new FogBroker("broker");
+		final Map<String, Application> applications = new HashMap<String, Application>();
+		applications.put(APP_ID, createApplication(broker.getId()));
+		final List<FogDevice> fogDevices = topology.createFogDevices(topology.createLocator());
+		final int cloudId = fogDevices.get(0).getId();
+		Benchmark.measure("ClusteredMicroservicePlacementLogic.run", params, topology.getUsers(),
+				new Benchmark.Fixture() {
+					private ClusteredMicroservicePlacementLogic placementLogic;
+					private Map<Integer, Map<String, Double>> resourceAvailability;
+					private List<PlacementRequest> placementRequests;
+
+					@Override
+					public void setUp() {
+						// the placement consumes the resources and fills the requests
+						placementLogic = new ClusteredMicroservicePlacementLogic(cloudId);
+						resourceAvailability = new HashMap<Integer, Map<String, Double>>();
+						placementRequests = new ArrayList<PlacementRequest>();
+						for (FogDevice fogDevice : fogDevices) {
+							Map<String, Double> resources = new HashMap<String, Double>();
+							resources.put(ControllerComponent.CPU, (double) fogDevice.getHost().getTotalMips());
+							resources.put(ControllerComponent.RAM, (double) fogDevice.getHost().getRam());
+							resources.put(ControllerComponent.STORAGE, (double) fogDevice.getHost().getStorage());
+							resourceAvailability.put(fogDevice.getId(), resources);
+							if (fogDevice.getLevel() == 3) {
+								Map<String, Integer> placed = new HashMap<String, Integer>();
+								placed.put("clientModule", fogDevice.getId());
+								placementRequests.add(new PlacementRequest(APP_ID, fogDevice.getId(), fogDevice.getId(),
+										placed));
+							}
+						}
+					}
+
+					@Override
+					public Object run() {
+						PrintStream out = System.out;
+						System.setOut(DISCARD);
+						try {
+							return placementLogic.run(fogDevices, applications, resourceAvailability,
+									placementRequests);
+						} finally {
+							System.setOut(out);
+						}
+					}
+				});
+	}
+
+	private static void benchmarkIncrementalClustering(String params, final SyntheticTopology topology)
+			throws Exception {
+		Benchmark.measure("IncrementalClustering.nodeRelocated", params, RELOCATIONS, new Benchmark.Fixture() {
+			private LocationHandler locator;
+			private List<FogDevice> gateways;
+			private IncrementalClustering clustering;
+			private List<FogDevice> moved;
+			private List<Location> targets;
+
+			@Override
+			public void setUp() throws Exception {
+				PrintStream out = System.out;
+				System.setOut(DISCARD);
+				try {
+					CloudSim.init(1, Calendar.getInstance(), false);
+					FogBroker broker = new FogBroker("broker");
+					locator = topology.createLocator();
+					gateways = new ArrayList<FogDevice>();
+					for (FogDevice fogDevice : topology.createFogDevices(locator)) {
+						if (fogDevice.getLevel() == 2)
+							gateways.add(fogDevice);
+					}
+					clustering = new IncrementalClustering(locator, Collections.singletonList(2), broker.getId());
+
+					// the same moves in every iteration, each within communication range of another gateway
+					Random random = new Random(42);
+					moved = new ArrayList<FogDevice>();
+					targets = new ArrayList<Location>();
+					double range = Config.Node_Communication_RANGE / METERS_PER_DEGREE;
+					for (int i = 0; i < RELOCATIONS; i++) {
+						moved.add(gateways.get(random.nextInt(gateways.size())));
+						FogDevice next = gateways.get(random.nextInt(gateways.size()));
+						Location location = locator.getCoordinates(locator.getDataIdByInstanceID(next.getId()));
+						double latitude = location.latitude + (random.nextDouble() * 2 - 1) * range;
+						double longitude = location.longitude
+								+ (random.nextDouble() * 2 - 1) * range / Math.cos(Math.toRadians(latitude));
+						targets.add(new Location(latitude, longitude, location.block));
+					}
+
+					// the devices then only schedule events every resource management interval
+					CloudSim.runStart();
+					CloudSim.runClockTick();
+				} finally {
+					System.setOut(out);
+				}
+			}
+
+			@Override
+			public Object run() {
+				for (int i = 0; i < RELOCATIONS; i++) {
+					locator.relocateResource(moved.get(i).getId(), targets.get(i));
+					clustering.nodeRelocated(moved.get(i));
+				}
+				// queues the membership deltas for the devices
+				CloudSim.runClockTick();
+				return CloudSim.clock();
+			}
+
+			@Override
+			public void tearDown() {
+				PrintStream out = System.out;
+				System.setOut(DISCARD);
+				try {
+					// the devices apply their deltas
+					CloudSim.runClockTick();
+				} finally {
+					System.setOut(out);
+				}
+				checkClusterMembers(locator, gateways);
+				CloudSim.finishSimulation();
+			}
+		});
+	}
+
+	/**
+	 * Checks that the cluster members of the gateways are those of a full clustering from their current
+	 * locations.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void checkClusterMembers(LocationHandler locator, List<FogDevice> gateways) {
+		Map<Integer, Set<Integer>> members = new HashMap<Integer, Set<Integer>>();
+		for (FogDevice gateway : gateways)
+			members.put(gateway.getId(), new HashSet<Integer>(gateway.getClusterMembers()));
+		JSONObject locatorObject = new JSONObject();
+		locatorObject.put("locationsInfo", locator);
+		PrintStream out = System.out;
+		System.setOut(DISCARD);
+		try {
+			for (FogDevice gateway : gateways) {
+				gateway.setClusterMembers(new ArrayList<Integer>());
+				new Clustering().createClusterMembers(gateway.getParentId(), gateway.getId(), locatorObject);
+			}
+		} finally {
+			System.setOut(out);
+		}
+		for (FogDevice gateway : gateways) {
+			Set<Integer> expected = new HashSet<Integer>(gateway.getClusterMembers());
+			if (!expected.equals(members.get(gateway.getId())))
+				throw new IllegalStateException("Cluster members of " + gateway.getName() + " are "
+						+ members.get(gateway.getId()) + " instead of " + expected);
+		}
+	}
+
+	/**
+	 * Modules and module edges of the application of {@link MicroserviceApp_RandomMobility_Clustering},
+	 * without tuple mappings, so that executed tuples emit nothing.
+	 */
+	private static Application createApplication(int userId) {
+		Application application = Application.createApplication(APP_ID, userId);
+		application.addAppModule("clientModule", 10);
+		application.addAppModule("processingModule", 10);
+		application.addAppModule("storageModule", 10);
+		application.addAppEdge("clientModule", "processingModule", TUPLE_CPU_LENGTH, TUPLE_NW_LENGTH, "RAW_DATA",
+				Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("processingModule", "storageModule", 1000, 1000, "PROCESSED_DATA", Tuple.UP,
+				AppEdge.MODULE);
+		return application;
+	}
+
+	/**
+	 * @return a tuple of the client module of the mobile, for the processing module of its gateway
+	 */
+	private static Tuple createTuple(int userId, FogDevice mobile) {
+		Tuple tuple = new Tuple(APP_ID, FogUtils.generateTupleId(), Tuple.UP, TUPLE_CPU_LENGTH, 1, TUPLE_NW_LENGTH,
+				TUPLE_NW_LENGTH, Tuple.FULL_UTILIZATION, Tuple.FULL_UTILIZATION, Tuple.FULL_UTILIZATION);
+		tuple.setUserId(userId);
+		tuple.setTupleType("RAW_DATA");
+		tuple.setSrcModuleName("clientModule");
+		tuple.setDestModuleName("processingModule");
+		tuple.setSourceDeviceId(mobile.getId());
+		tuple.setDestinationDeviceId(mobile.getParentId());
+		return tuple;
+	}
+
+	private static void benchmarkScenario(String params, final SyntheticTopology topology) throws Exception {
+		final File output = File.createTempFile("benchmark-output", ".csv");
+		output.deleteOnExit();
+		Benchmark.measureCold("MicroserviceApp_RandomMobility_Clustering", params, 1, new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				List<String> command = new ArrayList<String>();
+				command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+				command.add("-cp");
+				command.add(System.getProperty("java.class.path"));
+				command.add("-Dfog.resources_path=" + topology.getResourcesPath());
+				command.add("-Dfog.dataset_reference=" + topology.getDatasetReference());
+				command.add("-Dfog.output_path_data=" + output.getPath());
+				command.add(MicroserviceApp_RandomMobility_Clustering.class.getName());
+				command.add(String.valueOf(topology.getUsers()));
+				Process process = new ProcessBuilder(command).redirectErrorStream(true)
+						.redirectOutput(ProcessBuilder.Redirect.appendTo(new File(output.getPath() + ".log")))
+						.start();
+				int exitCode = process.waitFor();
+				if (exitCode != 0)
+					throw new IllegalStateException("Simulation exited with code " + exitCode);
+				return exitCode;
+			}
+		});
+		new File(output.getPath() + ".log").delete();
+	}
+
+	/**
+	 * Entity keeping one event scheduled to itself at all times.
+	 */
+	private static class HoldEntity extends SimEntity {
+
+		private final Random random;
+		private long processed = 0;
+
+		HoldEntity(String name, long seed) {
+			super(name);
+			random = new Random(seed);
+		}
+
+		@Override
+		public void startEntity() {
+			schedule(getId(), random.nextDouble() * 10, References.NOT_SET);
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			processed++;
+			schedule(getId(), random.nextDouble() * 10, References.NOT_SET);
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+}
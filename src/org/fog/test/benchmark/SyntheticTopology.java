@@ -0,0 +1,270 @@
+package org.fog.test.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.cloudbus.cloudsim.sdn.overbooking.BwProvisionerOverbooking;
+import org.cloudbus.cloudsim.sdn.overbooking.PeProvisionerOverbooking;
+import org.fog.entities.FogDevice;
+import org.fog.entities.FogDeviceCharacteristics;
+import org.fog.entities.MicroserviceFogDevice;
+import org.fog.mobilitydata.DataParser;
+import org.fog.mobilitydata.Location;
+import org.fog.mobilitydata.References;
+import org.fog.mobilitydata.SpatialIndex;
+import org.fog.placement.LocationHandler;
+import org.fog.policy.AppModuleAllocationPolicy;
+import org.fog.scheduler.StreamOperatorScheduler;
+import org.fog.utils.Config;
+import org.fog.utils.FogLinearPowerModel;
+import org.fog.utils.FogUtils;
+
+/**
+ * Topology of a given size derived from dataset/edgeResources-melbCBD.csv. The cloud and the proxies
+ * are kept as they are; gateways are copies of the original ones, moved by up to
+ * {@link #JITTER} meters, and every user follows a random walk starting next to a gateway. The
+ * generated files use the dataset formats, so they are read by the usual parsers.
+ */
+public class SyntheticTopology {
+
+	private static final double JITTER = 150; // meters
+	private static final double STEP = 50; // meters, length of a step of the users random walk
+	private static final int TRACE_LENGTH = 100;
+	private static final double METERS_PER_DEGREE = 111320;
+
+	private final int gateways;
+	private final int users;
+	private final String resourcesPath;
+	private final String datasetReference;
+
+	public SyntheticTopology(int gateways, int users, long seed) throws IOException {
+		this.gateways = gateways;
+		this.users = users;
+		File directory = Files.createTempDirectory("synthetic-topology").toFile();
+		directory.deleteOnExit();
+		resourcesPath = new File(directory, "edgeResources.csv").getPath();
+		datasetReference = new File(directory, "usersLocation_").getPath();
+
+		Random random = new Random(seed);
+		List<String[]> rows = new ArrayList<String[]>();
+		List<String[]> gatewayRows = new ArrayList<String[]>();
+		String header;
+		BufferedReader reader = new BufferedReader(new FileReader(References.resources_path));
+		try {
+			header = reader.readLine();
+			String row;
+			while ((row = reader.readLine()) != null) {
+				String[] data = row.split(",");
+				if (Integer.parseInt(data[4]) == 2)
+					gatewayRows.add(data);
+				else
+					rows.add(data);
+			}
+		} finally {
+			reader.close();
+		}
+
+		int id = 0;
+		List<double[]> positions = new ArrayList<double[]>();
+		FileWriter writer = new FileWriter(resourcesPath);
+		try {
+			writer.append(header).append("\n");
+			for (String[] data : rows) {
+				data[0] = String.valueOf(id++);
+				writer.append(String.join(",", data)).append("\n");
+			}
+			for (int i = 0; i < gateways; i++) {
+				String[] data = gatewayRows.get(i % gatewayRows.size()).clone();
+				double latitude = Double.parseDouble(data[1]);
+				double longitude = Double.parseDouble(data[2]);
+				if (i >= gatewayRows.size()) {
+					latitude += (random.nextDouble() * 2 - 1) * JITTER / METERS_PER_DEGREE;
+					longitude += (random.nextDouble() * 2 - 1) * JITTER / METERS_PER_DEGREE
+							/ Math.cos(Math.toRadians(latitude));
+				}
+				data[0] = String.valueOf(id++);
+				data[1] = String.valueOf(latitude);
+				data[2] = String.valueOf(longitude);
+				writer.append(String.join(",", data)).append("\n");
+				positions.add(new double[] { latitude, longitude });
+			}
+		} finally {
+			writer.close();
+		}
+
+		for (int user = 1; user <= users; user++) {
+			double[] start = positions.get(random.nextInt(positions.size()));
+			double latitude = start[0], longitude = start[1];
+			File trace = new File(datasetReference + user + ".csv");
+			trace.deleteOnExit();
+			FileWriter traceWriter = new FileWriter(trace);
+			try {
+				traceWriter.append("Latitude,Longitude\n");
+				for (int i = 0; i < TRACE_LENGTH; i++) {
+					traceWriter.append(latitude + ", " + longitude + "\n");
+					double angle = random.nextDouble() * 2 * Math.PI;
+					latitude += Math.sin(angle) * STEP / METERS_PER_DEGREE;
+					longitude += Math.cos(angle) * STEP / METERS_PER_DEGREE / Math.cos(Math.toRadians(latitude));
+				}
+			} finally {
+				traceWriter.close();
+			}
+		}
+		new File(resourcesPath).deleteOnExit();
+	}
+
+	public int getGateways() {
+		return gateways;
+	}
+
+	public int getUsers() {
+		return users;
+	}
+
+	/**
+	 * @return the edge resources file, for -Dfog.resources_path
+	 */
+	public String getResourcesPath() {
+		return resourcesPath;
+	}
+
+	/**
+	 * @return the prefix of the users mobility files, for -Dfog.dataset_reference
+	 */
+	public String getDatasetReference() {
+		return datasetReference;
+	}
+
+	/**
+	 * Parses the generated resources and user traces.
+	 */
+	public LocationHandler createLocator() throws IOException {
+		DataParser dataObject = new DataParser();
+		LocationHandler locator = new LocationHandler(dataObject);
+		locator.parseResourceInfo(resourcesPath);
+		Map<Integer, Integer> userMobilityPattern = new HashMap<Integer, Integer>();
+		for (int id = 1; id <= users; id++)
+			userMobilityPattern.put(id, References.DIRECTIONAL_MOBILITY);
+		locator.parseUserInfo(userMobilityPattern, datasetReference);
+		return locator;
+	}
+
+	/**
+	 * Creates the devices of the topology as MicroserviceApp_RandomMobility_Clustering does: cloud,
+	 * proxies, gateways and one mobile device per user, linked to their parent, with gateways of the
+	 * same proxy within {@link Config#Node_Communication_RANGE} clustered together. CloudSim must have
+	 * been initialised.
+	 */
+	public List<FogDevice> createFogDevices(LocationHandler locator) {
+		List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+		FogDevice cloud = createFogDevice("cloud", 44800, 40000, 100, 10000, 0.01, 16 * 103, 16 * 83.25,
+				MicroserviceFogDevice.CLOUD);
+		cloud.setParentId(References.NOT_SET);
+		locator.linkDataWithInstance(cloud.getId(), locator.getLevelWiseResources(locator.getLevelID("Cloud")).get(0));
+		cloud.setLevel(0);
+		fogDevices.add(cloud);
+
+		List<String> proxies = locator.getLevelWiseResources(locator.getLevelID("Proxy"));
+		for (int i = 0; i < proxies.size(); i++) {
+			FogDevice proxy = createFogDevice("proxy-server_" + i, 2800, 4000, 10000, 10000, 0.0, 107.339, 83.4333,
+					MicroserviceFogDevice.FON);
+			locator.linkDataWithInstance(proxy.getId(), proxies.get(i));
+			proxy.setParentId(cloud.getId());
+			proxy.setUplinkLatency(100);
+			proxy.setLevel(1);
+			fogDevices.add(proxy);
+		}
+
+		List<String> gatewayIds = locator.getLevelWiseResources(locator.getLevelID("Gateway"));
+		List<FogDevice> gatewayDevices = new ArrayList<FogDevice>();
+		for (int i = 0; i < gatewayIds.size(); i++) {
+			FogDevice gateway = createFogDevice("gateway_" + i, 2800, 4000, 10000, 10000, 0.0, 107.339, 83.4333,
+					MicroserviceFogDevice.FCN);
+			locator.linkDataWithInstance(gateway.getId(), gatewayIds.get(i));
+			gateway.setParentId(locator.determineParent(gateway.getId(), References.SETUP_TIME));
+			gateway.setUplinkLatency(4);
+			gateway.setLevel(2);
+			fogDevices.add(gateway);
+			gatewayDevices.add(gateway);
+		}
+
+		List<String> userIds = locator.getMobileUserDataId();
+		for (int i = 0; i < userIds.size(); i++) {
+			FogDevice mobile = createFogDevice("mobile_" + i, 500, 20, 1000, 270, 0, 87.53, 82.44,
+					MicroserviceFogDevice.CLIENT);
+			mobile.setUplinkLatency(2);
+			locator.linkDataWithInstance(mobile.getId(), userIds.get(i));
+			mobile.setParentId(locator.determineParent(mobile.getId(), References.INIT_TIME));
+			mobile.setLevel(3);
+			fogDevices.add(mobile);
+		}
+
+		Map<Integer, FogDevice> byId = new HashMap<Integer, FogDevice>();
+		for (FogDevice fogDevice : fogDevices)
+			byId.put(fogDevice.getId(), fogDevice);
+		for (FogDevice fogDevice : fogDevices) {
+			FogDevice parent = byId.get(fogDevice.getParentId());
+			if (parent == null)
+				continue;
+			parent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
+			parent.getChildrenIds().add(fogDevice.getId());
+		}
+
+		List<Location> locations = new ArrayList<Location>();
+		for (FogDevice gateway : gatewayDevices)
+			locations.add(locator.getCoordinates(locator.getDataIdByInstanceID(gateway.getId())));
+		SpatialIndex index = new SpatialIndex(locations, Config.Node_Communication_RANGE);
+		for (int i = 0; i < gatewayDevices.size(); i++) {
+			FogDevice gateway = gatewayDevices.get(i);
+			List<Integer> members = new ArrayList<Integer>();
+			Map<Integer, Double> latencies = new HashMap<Integer, Double>();
+			for (int j : index.withinRange(locations.get(i), Config.Node_Communication_RANGE)) {
+				FogDevice member = gatewayDevices.get(j);
+				if (j != i && member.getParentId() == gateway.getParentId()) {
+					members.add(member.getId());
+					latencies.put(member.getId(), Config.clusteringLatency);
+				}
+			}
+			gateway.setIsInCluster(true);
+			gateway.setSelfCluster(members.isEmpty());
+			gateway.setClusterMembers(members);
+			gateway.setClusterMembersToLatencyMap(latencies);
+		}
+		return fogDevices;
+	}
+
+	private static MicroserviceFogDevice createFogDevice(String nodeName, long mips, int ram, long upBw, long downBw,
+			double ratePerMips, double busyPower, double idlePower, String deviceType) {
+		List<Pe> peList = new ArrayList<Pe>();
+		peList.add(new Pe(0, new PeProvisionerOverbooking(mips)));
+		PowerHost host = new PowerHost(FogUtils.generateEntityId(), new RamProvisionerSimple(ram),
+				new BwProvisionerOverbooking(10000), 1000000, peList, new StreamOperatorScheduler(peList),
+				new FogLinearPowerModel(busyPower, idlePower));
+		List<Host> hostList = new ArrayList<Host>();
+		hostList.add(host);
+		FogDeviceCharacteristics characteristics = new FogDeviceCharacteristics(Config.FOG_DEVICE_ARCH,
+				Config.FOG_DEVICE_OS, Config.FOG_DEVICE_VMM, host, Config.FOG_DEVICE_TIMEZONE, Config.FOG_DEVICE_COST,
+				Config.FOG_DEVICE_COST_PER_MEMORY, Config.FOG_DEVICE_COST_PER_STORAGE, Config.FOG_DEVICE_COST_PER_BW);
+		try {
+			return new MicroserviceFogDevice(nodeName, characteristics, new AppModuleAllocationPolicy(hostList),
+					new LinkedList<Storage>(), 10, upBw, downBw, 1250000, 0, ratePerMips, deviceType);
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not create fog device " + nodeName, e);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package org.fog.test.perfeval;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.fog.mobilitydata.References;
+
+/**
+ * Runs {@link MicroserviceApp_RandomMobility_Clustering} several times, for every combination of
+ * number of mobile users and node communication range, and gathers the results in a single file.
+ * <p>
+ * CloudSim keeps the whole simulation in static state, so each run is forked in its own JVM with
+ * its own results file; up to one run per core is executed at a time. Each line of the aggregated
+ * file is the line written by the run, prefixed with its users, range and repetition number.
+ * <p>
+ * Usage: <tt>ClusteringExperimentRunner [-users 10,20] [-range 100,300] [-runs 5] [-threads n]
+ * [-out file]</tt>. The runs are started from the current directory, which must hold the
+ * dataset.
+ */
+public class ClusteringExperimentRunner {
+
+	private static List<Integer> users = new ArrayList<Integer>();
+	private static List<Double> ranges = new ArrayList<Double>();
+	private static int runs = 1;
+	private static int threads = Runtime.getRuntime().availableProcessors();
+	private static String output = References.output_path_data;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			if (args[i].equals("-users")) {
+				for (String s : value.split(","))
+					users.add(Integer.parseInt(s.trim()));
+			} else if (args[i].equals("-range")) {
+				for (String s : value.split(","))
+					ranges.add(Double.parseDouble(s.trim()));
+			} else if (args[i].equals("-runs")) {
+				runs = Integer.parseInt(value);
+			} else if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(value);
+			} else if (args[i].equals("-out")) {
+				output = value;
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		if (users.isEmpty())
+			users.add(20);
+		if (ranges.isEmpty())
+			ranges.add(300.0);
+
+		final File workDir = Files.createTempDirectory("clustering-runs").toFile();
+		List<String> prefixes = new ArrayList<String>();
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			for (final int user : users) {
+				for (final double range : ranges) {
+					for (int run = 1; run <= runs; run++) {
+						final String name = user + "_" + range + "_" + run;
+						prefixes.add((user + ";" + range + ";" + run + ";").replace(".", ","));
+						results.add(executor.submit(new Callable<String>() {
+							@Override
+							public String call() throws IOException, InterruptedException {
+								return runSimulation(workDir, name, user, range);
+							}
+						}));
+					}
+				}
+			}
+
+			FileWriter pw = new FileWriter(output, true);
+			try {
+				for (int i = 0; i < results.size(); i++) {
+					String line;
+					try {
+						line = results.get(i).get();
+					} catch (ExecutionException e) {
+						System.out.println("Run " + prefixes.get(i) + " failed: " + e.getCause());
+						continue;
+					}
+					pw.append(prefixes.get(i)).append(line).append("\n");
+					pw.flush();
+				}
+			} finally {
+				pw.close();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		System.out.println("Results of " + results.size() + " runs written to " + output
+				+ ", simulation logs in " + workDir);
+	}
+
+	/**
+	 * Forks one simulation and waits for it.
+	 *
+	 * @return the results line written by the simulation
+	 */
+	private static String runSimulation(File workDir, String name, int user, double range)
+			throws IOException, InterruptedException {
+		File result = new File(workDir, name + ".csv");
+		File log = new File(workDir, name + ".log");
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("-Dfog.output_path_data=" + result.getPath());
+		command.add(MicroserviceApp_RandomMobility_Clustering.class.getName());
+		command.add(String.valueOf(user));
+		command.add(String.valueOf(range));
+
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+		int exitCode = process.waitFor();
+		if (exitCode != 0 || !result.exists())
+			throw new IOException("Simulation exited with code " + exitCode + ", see " + log);
+		List<String> lines = Files.readAllLines(result.toPath(), StandardCharsets.ISO_8859_1);
+		if (lines.isEmpty())
+			throw new IOException("Simulation wrote no results, see " + log);
+		return lines.get(lines.size() - 1);
+	}
+}
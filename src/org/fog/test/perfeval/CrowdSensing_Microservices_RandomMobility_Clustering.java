@@ -63,6 +63,7 @@ public class CrowdSensing_Microservices_RandomMobility_Clustering {
     // if random mobility generator for users is True, new random dataset will be created for each user
     static boolean randomMobility_generator = false; // To use random datasets
     static boolean renewDataset = false; // To overwrite existing random datasets
+    static boolean groupSensorEmissions = false; // One entity drives the emissions of all the sensors, see SensorGroup
     static List<Integer> clusteringLevels = new ArrayList<Integer>(); // The selected fog layers for clustering
 
     //application
@@ -104,6 +105,8 @@ public class CrowdSensing_Microservices_RandomMobility_Clustering {
              */
             createMobileUser(broker.getId(), applications.get(0).getAppId(), datasetReference);
             createFogDevices(broker.getId(), applications.get(0).getAppId());
+            if (groupSensorEmissions)
+                new SensorGroup("sensor-group", sensors);
 
             /**
              * Central controller for performing preprocessing functions
@@ -39,6 +39,7 @@ import org.fog.mobilitydata.DataParser;
 import org.fog.mobilitydata.Location;
 import org.fog.mobilitydata.RandomMobilityGenerator;
 import org.fog.mobilitydata.References;
+import org.fog.mobilitydata.SpatialIndex;
 import org.fog.placement.LocationHandler;
 import org.fog.policy.AppModuleAllocationPolicy;
 import org.fog.scheduler.StreamOperatorScheduler;
@@ -136,7 +137,8 @@ public class GeoClusterGen {
 		locator.parseResourceInfo();
 		List<String> proxies = new ArrayList<String>();
 		List<String> gateways = new ArrayList<String>();
-		List<String> added = new ArrayList<String>();
+		Set<String> added = new HashSet<String>();
+		Map<String, Integer> clusterOf = new HashMap<String, Integer>();
 
 		/*
 		 * Gathers all nodes
@@ -159,6 +161,11 @@ public class GeoClusterGen {
 //		
 //		maxC = Math.ceil(nodes.size() / metersPerNode);
 
+		/*
+		 * Spatial index over the nodes, so range checks only visit nearby candidates
+		 */
+		SpatialIndex index = SpatialIndex.ofResources(locator, nodes, suggestedRange);
+
 		/*
 		 * Foreach of them
 		 */
@@ -177,28 +184,13 @@ public class GeoClusterGen {
 				clusters.add(newList);
 				responsible = 0;
 				added.add(current);
+				clusterOf.put(current, responsible);
 			} else {
 				/*
-				 * If responsible is empty
+				 * If responsible is empty, checks if there is any cluster with the current
+				 * node id and returns the responsible of the cluster (proxy)
 				 */
-				if (responsible == null) {
-					/*
-					   Iterates each cluster 
-					 */
-					for (int j = 0; j < clusters.size(); j++) {
-						HashSet<String> list = clusters.get(j);
-						/*
-						   As they are in a group, checks if there is any cluster with the current node id 
-						   and returns the responsible of the cluster (proxy)
-						 */
-						for (String node : list) {
-							if (node == current) {
-								responsible = j;
-								break;
-							}
-						}
-					}
-				}
+				responsible = clusterOf.get(current);
 				/*
 				   If still, there is no responsible, the current node is a proxy (responsible) node
 				   and it is added to the clusters array
@@ -211,14 +203,15 @@ public class GeoClusterGen {
 					clusters.add(newList);
 					responsible = clusters.size() - 1;
 					added.add(current);
+					clusterOf.put(current, responsible);
 				}
 			}
 
 			/*
-			  For each of the next nodes, we check if the blocks is not full (length < available - MAX)
-			  and if the node is within the Euclidian Distance (range - ANR)
+			  For each of the next nodes within the Euclidian Distance (range - ANR), in node order,
+			  we check if the blocks is not full (length < available - MAX)
 			 */
-			for (int j = 0; j < nodes.size(); j++) {
+			for (int j : index.withinRange(locator.getCoordinates(current), suggestedRange)) {
 				String nextNode = nodes.get(j);
 				if (nextNode == current) {
 					continue;
@@ -228,15 +221,12 @@ public class GeoClusterGen {
 					continue;
 				}
 
-				if (clusters.get(responsible).size() <= maxC) {
-					if (calculateInRange(locator.getCoordinates(current), locator.getCoordinates(nextNode),
-							suggestedRange)) {
-						clusters.get(responsible).add(nextNode);
-						added.add(nextNode);
-//						System.out.printf("Total node %s\n", nodes.size());
-//						System.out.println("Removed index " + j + " with value " + nextNode);
-					}
-				} 
+				if (clusters.get(responsible).size() > maxC) {
+					break;
+				}
+				clusters.get(responsible).add(nextNode);
+				added.add(nextNode);
+				clusterOf.put(nextNode, responsible);
 			}
 //			System.out.printf("The responsible node of %s is %s that has %s nodes\n", current, responsible,
 //					clusters.get(responsible));
@@ -334,27 +324,6 @@ public class GeoClusterGen {
 
 	}
 
-	private static boolean calculateInRange(Location loc1, Location loc2, double fogRange) {
-
-		final int R = 6371; // Radius of the earth in Kilometers
-
-		double latDistance = Math.toRadians(loc1.latitude - loc2.latitude);
-		double lonDistance = Math.toRadians(loc1.longitude - loc2.longitude);
-		double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2) + Math.cos(Math.toRadians(loc1.latitude))
-				* Math.cos(Math.toRadians(loc2.latitude)) * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-		double distance = R * c; // kms
-
-		distance = Math.pow(distance, 2);
-
-		if (Math.sqrt(distance) <= fogRange / 1000) {
-			return true;
-		} else {
-			return false;
-		}
-
-	}
-
 	private static void createMobileUser(int userId, String appId, String datasetReference) throws IOException {
 
 		for (int id = 1; id <= numberOfMobileUser; id++)
@@ -26,6 +26,7 @@ import org.fog.placement.PlacementLogicFactory;
 import org.fog.policy.AppModuleAllocationPolicy;
 import org.fog.scheduler.StreamOperatorScheduler;
 import org.fog.utils.FogLinearPowerModel;
+import org.fog.utils.Config;
 import org.fog.utils.FogUtils;
 import org.fog.utils.TimeKeeper;
 import org.fog.utils.distribution.DeterministicDistribution;
@@ -69,9 +70,17 @@ public class MicroserviceApp_RandomMobility_Clustering {
 	static List<Application> applications = new ArrayList<>();
 	static List<Pair<Double, Double>> qosValues = new ArrayList<>();
 
+	/**
+	 * @param args optional number of mobile users and node communication range (in meters), as
+	 *             used by {@link ClusteringExperimentRunner}
+	 */
 	public static void main(String[] args) {
 
 		try {
+			if (args.length > 0)
+				numberOfMobileUser = Integer.parseInt(args[0]);
+			if (args.length > 1)
+				Config.Node_Communication_RANGE = Double.parseDouble(args[1]);
 
 			Log.disable();
 			int num_user = 1; // number of cloud users
@@ -23,6 +23,22 @@ public class Config {
 	public static double AREA = 1770; // in m~2
 	public static double PERIMETER = 5620; // in 5.62km
 	public static double clusteringLatency = 2.0; //milisecond
+	// Cluster members within Node_Communication_RANGE share the wireless medium of a device instead of having a link each
+	public static boolean CLUSTER_SHARED_MEDIUM = false;
 
 	public static final int TRANSMISSION_START_DELAY = 50;
+
+	// Acknowledge every tuple arrival with a TUPLE_ACK event, otherwise only the senders registered with FogDevice.addTupleAckListener
+	public static boolean TUPLE_ACKS = false;
+
+	// Keep only aggregated loop latency and CPU time statistics in TimeKeeper, forgetting per tuple entries once used
+	public static boolean STREAMING_TIME_STATISTICS = true;
+	// In streaming mode, forget the emission time of a loop tuple that did not complete its loop within this time
+	public static double LOOP_TUPLE_MAX_AGE = 10000;
+
+	// Reuse tuples once executed or received by an actuator instead of allocating new ones, see Tuple.recycle
+	public static boolean RECYCLE_TUPLES = false;
+
+	// Record the CPU utilization changes of every fog device, see EnergyAccount
+	public static boolean UTILIZATION_TIMELINES = false;
 }
@@ -0,0 +1,108 @@
+package org.fog.utils;
+
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.power.models.PowerModel;
+
+/**
+ * Energy consumption and cost of a fog device, integrated piecewise over its CPU utilization.
+ * <p>
+ * Each update adds the energy and cost of the interval since the previous one at the utilization
+ * set then, with the same arithmetic as a per-update computation so that totals do not depend on
+ * how often the device is updated. The power drawn is only computed again when the utilization
+ * changes, and empty intervals are skipped.
+ * <p>
+ * If {@link Config#UTILIZATION_TIMELINES} is set, every utilization change is also recorded, in
+ * primitive arrays of change times and new utilizations. The utilization is 0 before the first
+ * recorded change.
+ */
+public class EnergyAccount {
+
+	private final PowerModel powerModel;
+	private double energyConsumption = 0;
+	private double totalCost = 0;
+	private double utilization = 0;
+	private double power; // drawn at utilization
+	private double lastUpdateTime = 0;
+
+	private double[] changeTimes = new double[0];
+	private double[] utilizations = new double[0];
+	private int changes = 0;
+
+	public EnergyAccount(PowerModel powerModel) {
+		this.powerModel = powerModel;
+		this.power = powerModel.getPower(utilization);
+	}
+
+	/**
+	 * Accounts for the time elapsed at the current utilization, then switches to the new one.
+	 *
+	 * @param utilization between 0 and 1
+	 * @param ratePerMips cost of a MIPS per unit of time
+	 * @param totalMips MIPS of the device at full utilization
+	 */
+	public void update(double time, double utilization, double ratePerMips, double totalMips) {
+		if (time != lastUpdateTime) {
+			double elapsed = time - lastUpdateTime;
+			energyConsumption += elapsed * power;
+			totalCost += elapsed * ratePerMips * this.utilization * totalMips;
+			lastUpdateTime = time;
+		}
+		if (utilization != this.utilization) {
+			this.utilization = utilization;
+			power = powerModel.getPower(utilization);
+			if (Config.UTILIZATION_TIMELINES)
+				recordChange(time, utilization);
+		}
+	}
+
+	public double getEnergyConsumption() {
+		return energyConsumption;
+	}
+
+	public void setEnergyConsumption(double energyConsumption) {
+		this.energyConsumption = energyConsumption;
+	}
+
+	public double getTotalCost() {
+		return totalCost;
+	}
+
+	public void setTotalCost(double totalCost) {
+		this.totalCost = totalCost;
+	}
+
+	public double getUtilization() {
+		return utilization;
+	}
+
+	/**
+	 * @return times of the recorded utilization changes, in ascending order
+	 */
+	public double[] getChangeTimes() {
+		return Arrays.copyOf(changeTimes, changes);
+	}
+
+	/**
+	 * @return utilization from each of the {@link #getChangeTimes()} on
+	 */
+	public double[] getUtilizations() {
+		return Arrays.copyOf(utilizations, changes);
+	}
+
+	private void recordChange(double time, double utilization) {
+		// several changes at the same time leave the last one
+		if (changes > 0 && changeTimes[changes - 1] == time) {
+			utilizations[changes - 1] = utilization;
+			return;
+		}
+		if (changes == changeTimes.length) {
+			int capacity = Math.max(16, changes * 2);
+			changeTimes = Arrays.copyOf(changeTimes, capacity);
+			utilizations = Arrays.copyOf(utilizations, capacity);
+		}
+		changeTimes[changes] = time;
+		utilizations[changes] = utilization;
+		changes++;
+	}
+}
@@ -0,0 +1,131 @@
+package org.fog.utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from int keys to double values, stored in primitive arrays with linear probing, so
+ * that neither keys nor values are boxed.
+ */
+public class IntDoubleMap {
+
+	private static final int FREE = Integer.MIN_VALUE; // key marking an empty slot
+
+	private int[] keys;
+	private double[] values;
+	private int size;
+	private int mask;
+
+	public IntDoubleMap() {
+		this(16);
+	}
+
+	public IntDoubleMap(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(4, capacity * 2 - 1)) << 1;
+		keys = new int[slots];
+		Arrays.fill(keys, FREE);
+		values = new double[slots];
+		mask = slots - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(int key) {
+		return keys[slot(key)] != FREE;
+	}
+
+	/**
+	 * @return the value of the key, NaN if there is none
+	 */
+	public double get(int key) {
+		int slot = slot(key);
+		return keys[slot] == FREE ? Double.NaN : values[slot];
+	}
+
+	/**
+	 * @param key any int but Integer.MIN_VALUE
+	 */
+	public void put(int key, double value) {
+		if (key == FREE)
+			throw new IllegalArgumentException("Unsupported key " + key);
+		int slot = slot(key);
+		if (keys[slot] == FREE) {
+			if ((size + 1) * 2 > keys.length) {
+				grow();
+				slot = slot(key);
+			}
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * @return the value the key had, NaN if there was none
+	 */
+	public double remove(int key) {
+		int slot = slot(key);
+		if (keys[slot] == FREE)
+			return Double.NaN;
+		double value = values[slot];
+		size--;
+		// shifts back the following keys of the probe sequence, so that no tombstone is needed
+		int free = slot;
+		for (int i = (free + 1) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+			int home = hash(keys[i]);
+			if (((i - home) & mask) >= ((i - free) & mask)) {
+				keys[free] = keys[i];
+				values[free] = values[i];
+				free = i;
+			}
+		}
+		keys[free] = FREE;
+		return value;
+	}
+
+	/**
+	 * Calls the consumer with every key and value, in no particular order.
+	 */
+	public void forEach(Consumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE)
+				consumer.accept(keys[i], values[i]);
+		}
+	}
+
+	public interface Consumer {
+		void accept(int key, double value);
+	}
+
+	/**
+	 * @return the slot holding the key, or the free slot where it would be added
+	 */
+	private int slot(int key) {
+		int i = hash(key);
+		while (keys[i] != FREE && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		Arrays.fill(keys, FREE);
+		values = new double[oldValues.length * 2];
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package org.fog.utils;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative delays with a bounded relative error, in constant memory whatever the
+ * number of recorded values. Each power of two is split in {@link #SUB_BUCKETS} linear buckets, so a
+ * percentile is reported within 1/64 of its actual value. Histograms of separate runs or devices can
+ * be combined with {@link #merge(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 64;
+	private static final int MIN_EXPONENT = -20; // values below 2^-20 are counted as 0
+	private static final int MAX_EXPONENT = 40;
+
+	private final long[] counts = new long[1 + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS];
+	private long count;
+	private double sum;
+	private double min = Double.MAX_VALUE;
+	private double max = 0;
+
+	public void record(double value) {
+		if (value < 0 || Double.isNaN(value))
+			value = 0;
+		counts[bucket(value)]++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++)
+			counts[i] += other.counts[i];
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		min = Double.MAX_VALUE;
+		max = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	public double getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the value below which the given percentage of the recorded values fall.
+	 *
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, capped by the largest value
+	 */
+	public double getPercentile(double percentile) {
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100 * count);
+		rank = Math.max(1, Math.min(count, rank));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.max(getMin(), Math.min(max, upperBound(i)));
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.4f p50=%.4f p95=%.4f p99=%.4f max=%.4f", count, getMean(),
+				getPercentile(50), getPercentile(95), getPercentile(99), max);
+	}
+
+	private static int bucket(double value) {
+		int exponent = Math.getExponent(value);
+		if (exponent < MIN_EXPONENT)
+			return 0;
+		if (exponent > MAX_EXPONENT)
+			return (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+		int sub = (int) ((value / Math.scalb(1.0, exponent) - 1) * SUB_BUCKETS);
+		return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + Math.min(sub, SUB_BUCKETS - 1);
+	}
+
+	private static double upperBound(int bucket) {
+		if (bucket == 0)
+			return Math.scalb(1.0, MIN_EXPONENT);
+		int exponent = (bucket - 1) / SUB_BUCKETS + MIN_EXPONENT;
+		int sub = (bucket - 1) % SUB_BUCKETS;
+		return Math.scalb(1.0 + (sub + 1) / (double) SUB_BUCKETS, exponent);
+	}
+}
@@ -10,7 +10,12 @@ public class Logger {
 	public static final int DEBUG = 0;
 	
 	public static int LOG_LEVEL = Logger.DEBUG;
-	private static DecimalFormat df = new DecimalFormat("#.00"); 
+	private static final ThreadLocal<DecimalFormat> df = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("#.00");
+		}
+	};
 
 	public static boolean ENABLED = false;
 	
@@ -22,13 +27,13 @@ public class Logger {
 		if(!ENABLED)
 			return;
 		if(Logger.LOG_LEVEL <= Logger.DEBUG)
-			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
+			System.out.println(df.get().format(CloudSim.clock())+" : "+name+" : "+message);
 	}
 	public static void error(String name, String message){
 		if(!ENABLED)
 			return;
 		if(Logger.LOG_LEVEL <= Logger.ERROR)
-			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
+			System.out.println(df.get().format(CloudSim.clock())+" : "+name+" : "+message);
 	}
 	
 }
@@ -9,11 +9,22 @@ public class MicroservicePlacementConfig {
     //Placement Request Processing Mode
     public static String PERIODIC = "Periodic";
     public static String SEQUENTIAL = "Sequential";
+    // requests reaching a FON within PLACEMENT_BATCH_WINDOW are placed together, and each device gets one deployment
+    // message and one service discovery message for the whole batch
+    public static String BATCHED = "Batched";
     public static String PR_PROCESSING_MODE = PERIODIC;
 
     // For periodic placement
     public static final double PLACEMENT_INTERVAL = 1;
 
+    // For batched placement, window starting at the first request of a batch (0 batches the requests received at the same time)
+    public static double PLACEMENT_BATCH_WINDOW = 0.0;
+
+    // FONs processing placement requests at the same time solve them concurrently, results are then deployed in the
+    // order the FONs processed their requests
+    public static boolean PARALLEL_PLACEMENT = false;
+    public static int PARALLEL_PLACEMENT_THREADS = Runtime.getRuntime().availableProcessors();
+
     //Resource info sharing among cluster nodes
     public static Boolean ENABLE_RESOURCE_DATA_SHARING = false;
     public static double MODULE_DEPLOYMENT_TIME = 0.0;
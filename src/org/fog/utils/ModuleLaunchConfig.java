@@ -5,6 +5,7 @@ import org.fog.application.AppModule;
 public class ModuleLaunchConfig {
 
 	private AppModule module;
+	private AppModule template; // module copied by createModule, null once the copy exists
 	private int instanceCount;
 	
 	public ModuleLaunchConfig(AppModule module, int instanceCount){
@@ -12,11 +13,35 @@ public class ModuleLaunchConfig {
 		setInstanceCount(instanceCount);
 	}
 	
+	/**
+	 * Launch config of a copy of template, created by {@link #createModule()} rather than right away so that a
+	 * placement logic can run without taking entity ids.
+	 */
+	public static ModuleLaunchConfig copyOf(AppModule template, int instanceCount) {
+		ModuleLaunchConfig moduleLaunchConfig = new ModuleLaunchConfig(null, instanceCount);
+		moduleLaunchConfig.template = template;
+		return moduleLaunchConfig;
+	}
+	
+	/**
+	 * Creates the module copied from the template, if not done yet.
+	 */
+	public void createModule() {
+		if (template != null) {
+			module = new AppModule(template);
+			template = null;
+		}
+	}
+	
+	/**
+	 * @return the module, null for a copy until {@link #createModule()} is called
+	 */
 	public AppModule getModule() {
 		return module;
 	}
 	public void setModule(AppModule module) {
 		this.module = module;
+		this.template = null;
 	}
 	public int getInstanceCount() {
 		return instanceCount;
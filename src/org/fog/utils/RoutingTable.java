@@ -0,0 +1,210 @@
+package org.fog.utils;
+
+import org.fog.entities.FogDevice;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Routing table of a fog device: the next hop towards every device of the topology, and the link to use to reach
+ * that next hop (up to the parent, down to a child, or to a cluster member).
+ * <p>
+ * Next hops are stored in an array indexed by a dense device index, shared by all the tables generated together,
+ * so both lookups are O(1). Link types are computed from the parent, children and cluster members of the device the
+ * first time they are needed after one of those changed (see {@link #invalidateLinkTypes()}).
+ * <p>
+ * Devices with identical tables, such as the mobile devices connected to the same gateway, share the same arrays.
+ * They are copied on the first change made through one of the tables sharing them. The entry of a device for
+ * itself is never looked up, it is set as the one of its parent so that it does not prevent sharing.
+ */
+public class RoutingTable {
+
+    public static final byte NO_LINK = 0;
+    public static final byte UP = 1;
+    public static final byte DOWN = 2;
+    public static final byte CLUSTER = 3;
+
+    private final FogDevice device;
+    private final DeviceIndex index;
+    private Routes routes;
+    private boolean linkTypesValid = false;
+
+    RoutingTable(FogDevice device, DeviceIndex index, Routes routes) {
+        this.device = device;
+        this.index = index;
+        this.routes = routes;
+        routes.users++;
+    }
+
+    /**
+     * @return id of the device to forward to in order to reach destId, -1 if it is unreachable or unknown
+     */
+    public int getNextHop(int destId) {
+        if (destId == device.getId())
+            return destId;
+        int i = index.indexOf(destId);
+        return i < 0 ? -1 : routes.nextHops[i];
+    }
+
+    /**
+     * @return link leading to the next hop towards destId: UP, DOWN, CLUSTER, or NO_LINK if the next hop is not a
+     * neighbour of the device
+     */
+    public byte getLinkType(int destId) {
+        int i = index.indexOf(destId);
+        if (i < 0 || destId == device.getId())
+            return NO_LINK;
+        if (!linkTypesValid)
+            updateLinkTypes();
+        return routes.linkTypes[i];
+    }
+
+    public void setNextHop(int destId, int nextId) {
+        int i = index.indexOf(destId);
+        if (i < 0) {
+            Logger.error("Routing error", "Device " + destId + " is not part of the routing tables of " + device.getName());
+            return;
+        }
+        if (!linkTypesValid) {
+            if (routes.nextHops[i] != nextId)
+                mutableRoutes().nextHops[i] = nextId;
+            return;
+        }
+        byte linkType = linkTypeOf(nextId, device.getParentId(), device.getChildrenIds(), device.getClusterMembers());
+        if (routes.nextHops[i] != nextId || routes.linkTypes[i] != linkType) {
+            Routes mutable = mutableRoutes();
+            mutable.nextHops[i] = nextId;
+            mutable.linkTypes[i] = linkType;
+        }
+    }
+
+    /**
+     * Forwards to newNextId everything that was forwarded to nextId.
+     */
+    public void replaceNextHop(int nextId, int newNextId) {
+        for (int i = 0; i < routes.nextHops.length; i++) {
+            if (routes.nextHops[i] == nextId)
+                setNextHop(index.ids[i], newNextId);
+        }
+    }
+
+    /**
+     * Shares the routes of another table of the same generation, known to be identical to what this table should
+     * hold, e.g. the table of another mobile device connected to the same gateway.
+     */
+    public void shareRoutes(RoutingTable other) {
+        if (other.index != index || other.routes == routes)
+            return;
+        routes.users--;
+        routes = other.routes;
+        routes.users++;
+        linkTypesValid = false;
+    }
+
+    /**
+     * Must be called when the parent, children or cluster members of the device change.
+     */
+    public void invalidateLinkTypes() {
+        linkTypesValid = false;
+    }
+
+    private void updateLinkTypes() {
+        int parentId = device.getParentId();
+        Set<Integer> children = new HashSet<>(device.getChildrenIds());
+        Set<Integer> clusterMembers = device.getClusterMembers() == null ? new HashSet<Integer>()
+                : new HashSet<>(device.getClusterMembers());
+        byte[] linkTypes = new byte[index.size];
+        for (int i = 0; i < linkTypes.length; i++)
+            linkTypes[i] = linkTypeOf(routes.nextHops[i], parentId, children, clusterMembers);
+
+        if (!routes.linkTypesSet || routes.users == 1) {
+            routes.linkTypes = linkTypes;
+            routes.linkTypesSet = true;
+        } else if (!Arrays.equals(linkTypes, routes.linkTypes)) {
+            mutableRoutes().linkTypes = linkTypes;
+        }
+        linkTypesValid = true;
+    }
+
+    private static byte linkTypeOf(int nextId, int parentId, Collection<Integer> children,
+                                   Collection<Integer> clusterMembers) {
+        if (nextId == parentId)
+            return UP;
+        else if (children.contains(nextId))
+            return DOWN;
+        else if (clusterMembers != null && clusterMembers.contains(nextId))
+            return CLUSTER;
+        return NO_LINK;
+    }
+
+    private Routes mutableRoutes() {
+        if (routes.users > 1) {
+            routes.users--;
+            routes = new Routes(routes);
+            routes.users++;
+        }
+        return routes;
+    }
+
+    /**
+     * Dense indexes of the devices of a topology, by device id.
+     */
+    static class DeviceIndex {
+        private final int[] indexes;
+        private final int[] ids;
+        private final int size;
+
+        DeviceIndex(List<FogDevice> fogDevices) {
+            int maxId = -1;
+            for (FogDevice fogDevice : fogDevices)
+                maxId = Math.max(maxId, fogDevice.getId());
+            indexes = new int[maxId + 1];
+            Arrays.fill(indexes, -1);
+            ids = new int[fogDevices.size()];
+            for (int i = 0; i < fogDevices.size(); i++) {
+                indexes[fogDevices.get(i).getId()] = i;
+                ids[i] = fogDevices.get(i).getId();
+            }
+            size = fogDevices.size();
+        }
+
+        int indexOf(int deviceId) {
+            return deviceId >= 0 && deviceId < indexes.length ? indexes[deviceId] : -1;
+        }
+    }
+
+    /**
+     * Next hop and link type arrays, possibly shared by several tables. Equality is on the next hops, to find the
+     * identical tables of a generation.
+     */
+    static class Routes {
+        private final int[] nextHops;
+        private byte[] linkTypes;
+        private boolean linkTypesSet;
+        private int users = 0;
+
+        Routes(int[] nextHops) {
+            this.nextHops = nextHops;
+            this.linkTypes = new byte[nextHops.length];
+        }
+
+        private Routes(Routes routes) {
+            nextHops = routes.nextHops.clone();
+            linkTypes = routes.linkTypes.clone();
+            linkTypesSet = routes.linkTypesSet;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Routes && Arrays.equals(nextHops, ((Routes) o).nextHops);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nextHops);
+        }
+    }
+}
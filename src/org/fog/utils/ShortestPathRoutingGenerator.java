@@ -1,129 +1,189 @@
 package org.fog.utils;
 
-import org.apache.commons.math3.util.Pair;
 import org.fog.entities.FogDevice;
 import org.fog.entities.MicroserviceFogDevice;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * Created by Samodha Pallewatta on 6/18/2021.
  * Creates a routing table considering shortest path between devices.
+ * <p>
+ * Devices are linked to their parent, their children and their cluster members, with the latency of
+ * that link. Routes are found by running Dijkstra from every device over these links, which is
+ * O(n.m.log n) for n devices and m links. When several shortest paths exist, the next hop is the
+ * one coming first in the device list.
  */
 public class ShortestPathRoutingGenerator {
 
-    public static Map<Integer, Map<Integer, Integer>> generateRoutingTable(List<FogDevice> fogDevices) {
-        // <source device id>  ->  <dest device id,next device to route to>
-        Map<Integer, Map<Integer, Integer>> routing = new HashMap<>();
-        Map<String, Map<String, String>> routingString = new HashMap<>();
+    public static Map<Integer, RoutingTable> generateRoutingTable(List<FogDevice> fogDevices) {
+        // <source device id>  ->  routing table
+        Map<Integer, RoutingTable> routing = new HashMap<>();
         int size = fogDevices.size();
 
-        int[][] routingMatrix = new int[size][size];
-        double[][] distanceMatrix = new double[size][size];
+        Map<Integer, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < size; i++)
+            indexes.put(fogDevices.get(i).getId(), i);
+        RoutingTable.DeviceIndex deviceIndex = new RoutingTable.DeviceIndex(fogDevices);
+        Map<RoutingTable.Routes, RoutingTable.Routes> distinctRoutes = new HashMap<>();
+
+        // links are bidirectional, with the latency seen by the device coming first in the list
+        List<List<Integer>> neighbours = new ArrayList<>();
+        List<List<Double>> latencies = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            neighbours.add(new ArrayList<Integer>());
+            latencies.add(new ArrayList<Double>());
+        }
+        Set<Long> links = new HashSet<>();
         for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                routingMatrix[row][column] = -1;
-                distanceMatrix[row][column] = -1;
+            for (int id : linkedDeviceIds(fogDevices.get(row))) {
+                Integer column = indexes.get(id);
+                if (column == null || column == row)
+                    continue;
+                int first = Math.min(row, column);
+                int second = Math.max(row, column);
+                if (!links.add(((long) first << 32) | second))
+                    continue;
+                double dist = directlyConnectedDist(fogDevices.get(first), fogDevices.get(second));
+                if (dist < 0)
+                    dist = directlyConnectedDist(fogDevices.get(second), fogDevices.get(first));
+                neighbours.get(first).add(second);
+                latencies.get(first).add(dist);
+                neighbours.get(second).add(first);
+                latencies.get(second).add(dist);
             }
         }
 
-        boolean change = true;
-        boolean firstIteration = true;
-        while (change || firstIteration) {
-            change = false;
-            for (int row = 0; row < size; row++) {
-                for (int column = 0; column < size; column++) {
-                    double dist = distanceMatrix[row][column];
-                    FogDevice rFog = fogDevices.get(row);
-                    FogDevice cFog = fogDevices.get(column);
-                    if (firstIteration && dist < 0) {
-                        if (row == column) {
-                            dist = 0;
-                        } else {
-                            dist = directlyConnectedDist(rFog, cFog);
-                        }
-                        if (dist >= 0) {
-                            change = true;
-                            distanceMatrix[row][column] = dist;
-                            distanceMatrix[column][row] = dist;
-
-                            // directly connected
-                            routingMatrix[row][column] = cFog.getId();
-                            routingMatrix[column][row] = rFog.getId();
-                        }
-                    }
-                    if (dist < 0) {
-                        Pair<Double, Integer> result = indirectDist(row, column, size, distanceMatrix);
-                        dist = result.getFirst();
-                        int mid = result.getSecond();
-                        if (dist >= 0) {
-                            change = true;
-                            distanceMatrix[row][column] = dist;
-                            routingMatrix[row][column] = routingMatrix[row][mid];
-                        }
-                    }
-                    if (dist > 0) {
-                        Pair<Double, Integer> result = indirectDist(row, column, size, distanceMatrix);
-                        double distNew = result.getFirst();
-                        int mid = result.getSecond();
-                        if (distNew < dist) {
-                            change = true;
-                            distanceMatrix[row][column] = distNew;
-                            routingMatrix[row][column] = routingMatrix[row][mid];
-                        }
-                    }
-                }
+        double[] distance = new double[size];
+        int[] nextHop = new int[size];
+        boolean[] settled = new boolean[size];
+        for (int source = 0; source < size; source++) {
+            shortestPaths(source, neighbours, latencies, distance, nextHop, settled);
+            int[] route = new int[size];
+            for (int column = 0; column < size; column++) {
+                int next = nextHop[column];
+                route[column] = next < 0 ? -1 : fogDevices.get(next).getId();
             }
-            firstIteration = false;
+            // the entry for the source itself is not used, it is set as the one of its parent so that the tables
+            // of the leaves of a same parent are identical
+            Integer parent = indexes.get(fogDevices.get(source).getParentId());
+            if (parent != null)
+                route[source] = route[parent];
+
+            RoutingTable.Routes routes = new RoutingTable.Routes(route);
+            RoutingTable.Routes identical = distinctRoutes.get(routes);
+            if (identical == null)
+                distinctRoutes.put(routes, routes);
+            else
+                routes = identical;
+            routing.put(fogDevices.get(source).getId(), new RoutingTable(fogDevices.get(source), deviceIndex, routes));
         }
 
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                int sourceId = fogDevices.get(row).getId();
-                int destId = fogDevices.get(column).getId();
-                if (routing.containsKey(sourceId)) {
-                    routing.get(sourceId).put(destId, routingMatrix[row][column]);
-                    routingString.get(fogDevices.get(row).getName()).put(fogDevices.get(column).getName(), getFogDeviceById(routingMatrix[row][column], fogDevices).getName());
-                } else {
-                    Map<Integer, Integer> route = new HashMap<>();
-                    route.put(destId, routingMatrix[row][column]);
-                    routing.put(sourceId, route);
-
-                    Map<String, String> routeS = new HashMap<>();
-                    routeS.put(fogDevices.get(column).getName(), getFogDeviceById(routingMatrix[row][column], fogDevices).getName());
-                    routingString.put(fogDevices.get(row).getName(), routeS);
-                }
+        return routing;
+    }
+
+    /**
+     * Updates the routing tables after a device without children nor cluster members, such as a
+     * mobile device, changed its parent. Routes to and from such a device go through its parent, so
+     * only the entries for that device need to change, and its own table is the one of the other
+     * leaves of its new parent, if any. Otherwise all the routing tables are regenerated.
+     */
+    public static void updateRoutingTable(List<FogDevice> fogDevices, FogDevice fogDevice) {
+        if (!isLeaf(fogDevice)) {
+            Map<Integer, RoutingTable> routing = generateRoutingTable(fogDevices);
+            for (FogDevice f : fogDevices)
+                ((MicroserviceFogDevice) f).addRoutingTable(routing.get(f.getId()));
+            return;
+        }
+
+        FogDevice sibling = null;
+        for (FogDevice f : fogDevices) {
+            if (f.getId() != fogDevice.getId() && f.getParentId() == fogDevice.getParentId() && isLeaf(f)) {
+                sibling = f;
+                break;
             }
         }
+        if (sibling != null)
+            ((MicroserviceFogDevice) fogDevice).getRoutingTable()
+                    .shareRoutes(((MicroserviceFogDevice) sibling).getRoutingTable());
+        else
+            ((MicroserviceFogDevice) fogDevice).updateRoutingTable(fogDevice.getId(), fogDevice.getParentId());
 
-//        System.out.println("Routing Table : ");
-//        for (String deviceName : routingString.keySet()) {
-//            System.out.println(deviceName + " : " + routingString.get(deviceName).toString());
-//        }
-//        System.out.println("\n");
+        for (FogDevice f : fogDevices) {
+            if (f.getId() != fogDevice.getId()) {
+                // for mobile device update all to parent
+                if (sibling == null)
+                    ((MicroserviceFogDevice) fogDevice).updateRoutingTable(f.getId(), fogDevice.getParentId());
 
-        return routing;
+                //// for other update route to mobile based on route to parent
+                int nextId = ((MicroserviceFogDevice) f).getRoutingTable().getNextHop(fogDevice.getParentId());
+                if (f.getId() != nextId)
+                    ((MicroserviceFogDevice) f).updateRoutingTable(fogDevice.getId(), nextId);
+                else
+                    ((MicroserviceFogDevice) f).updateRoutingTable(fogDevice.getId(), fogDevice.getId());
+            }
+        }
     }
 
+    /**
+     * Dijkstra from source. Fills distance and nextHop (the index of the device to forward to, -1 if
+     * unreachable) for every device.
+     */
+    private static void shortestPaths(int source, List<List<Integer>> neighbours, List<List<Double>> latencies,
+                                      double[] distance, int[] nextHop, boolean[] settled) {
+        Arrays.fill(distance, -1);
+        Arrays.fill(nextHop, -1);
+        Arrays.fill(settled, false);
+        distance[source] = 0;
+        nextHop[source] = source;
 
-    private static Pair<Double, Integer> indirectDist(int row, int dest, int size, double[][] distanceMatrix) {
-        double minDistFromDirectConn = distanceMatrix[row][dest];
-        int midPoint = -1;
-        for (int column = 0; column < size; column++) {
-            if (distanceMatrix[row][column] >= 0 && distanceMatrix[column][dest] >= 0) {
-                double totalDist = distanceMatrix[row][column] + distanceMatrix[column][dest];
-                if (minDistFromDirectConn >= 0 && totalDist < minDistFromDirectConn) {
-                    minDistFromDirectConn = totalDist;
-                    midPoint = column;
-                } else if (minDistFromDirectConn < 0) {
-                    minDistFromDirectConn = totalDist;
-                    midPoint = column;
+        PriorityQueue<double[]> queue = new PriorityQueue<>(16, (a, b) -> Double.compare(a[0], b[0]));
+        queue.add(new double[]{0, source});
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int node = (int) entry[1];
+            if (settled[node] || entry[0] > distance[node])
+                continue;
+            settled[node] = true;
+            List<Integer> nodeNeighbours = neighbours.get(node);
+            List<Double> nodeLatencies = latencies.get(node);
+            for (int i = 0; i < nodeNeighbours.size(); i++) {
+                int neighbour = nodeNeighbours.get(i);
+                if (settled[neighbour])
+                    continue;
+                double dist = distance[node] + nodeLatencies.get(i);
+                int hop = node == source ? neighbour : nextHop[node];
+                if (distance[neighbour] < 0 || dist < distance[neighbour]) {
+                    distance[neighbour] = dist;
+                    nextHop[neighbour] = hop;
+                    queue.add(new double[]{dist, neighbour});
+                } else if (dist == distance[neighbour] && hop < nextHop[neighbour]) {
+                    nextHop[neighbour] = hop;
                 }
             }
         }
-        return new Pair<>(minDistFromDirectConn, midPoint);
+    }
+
+    private static boolean isLeaf(FogDevice fogDevice) {
+        return (fogDevice.getChildrenIds() == null || fogDevice.getChildrenIds().isEmpty())
+                && (fogDevice.getClusterMembers() == null || fogDevice.getClusterMembers().isEmpty());
+    }
+
+    private static List<Integer> linkedDeviceIds(FogDevice fogDevice) {
+        List<Integer> ids = new ArrayList<>();
+        ids.add(fogDevice.getParentId());
+        if (fogDevice.getChildrenIds() != null)
+            ids.addAll(fogDevice.getChildrenIds());
+        if (fogDevice.getClusterMembers() != null)
+            ids.addAll(fogDevice.getClusterMembers());
+        return ids;
     }
 
     private static double directlyConnectedDist(FogDevice rFog, FogDevice cFog) {
@@ -139,12 +199,4 @@ public class ShortestPathRoutingGenerator {
         }
         return -1;
     }
-
-    private static FogDevice getFogDeviceById(int id, List<FogDevice> fogDevices) {
-        for (FogDevice f : fogDevices) {
-            if (f.getId() == id)
-                return f;
-        }
-        return null;
-    }
 }
@@ -1,5 +1,7 @@
 package org.fog.utils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,22 +16,31 @@ public class TimeKeeper {
 	
 	private long simulationStartTime;
 	private int count; 
-	private Map<Integer, Double> emitTimes;
-	private Map<Integer, Double> endTimes;
+	private IntDoubleMap emitTimes; // tuple id -> emission time of the loop tuples in flight
+	// in streaming mode, the loop tuples in emission order, so that the ones in flight for too long can be evicted:
+	// a ring of emitQueueSize entries from emitQueueHead, which may hold tuples that already completed their loop
+	private int[] emitQueueIds = new int[16];
+	private double[] emitQueueTimes = new double[16];
+	private int emitQueueHead;
+	private int emitQueueSize;
 	private Map<Integer, List<Integer>> loopIdToTupleIds;
 	private Map<Integer, Double> tupleIdToCpuStartTime;
 	private Map<String, Double> tupleTypeToAverageCpuTime;
 	private Map<String, Integer> tupleTypeToExecutedTupleCount;
 	
-	private Map<Integer, Double> loopIdToCurrentAverage;
-	private Map<Integer, Integer> loopIdToCurrentNum;
+	// loop ids come from getUniqueId like tuple ids, so they can be large: recorders are kept densely, in the order
+	// the loops are first seen, and found through loopIndexes
+	private LoopRecorder[] loopRecorders = new LoopRecorder[16];
+	private int loopCount;
+	private Map<Integer, Integer> loopIndexes = new HashMap<>(); // loop id -> position in loopRecorders
 
 	private Map<Integer, Integer> loopIdToLatencyQoSSuccessCount = new HashMap<>();
 
 	// loopID -> < Microservice -> < deviceID, <requestCount,totalExecutionTime > >
 	private Map<Integer, Map<String, Map<Integer, Pair<Integer, Double>>>> costCalcData = new HashMap<>();
-	// last execution time
-	private Map<Integer, Double> tupleIdToExecutionTime = new HashMap<>();
+
+	private Map<Integer, LatencyHistogram> loopIdToLatencyHistogram = new HashMap<>();
+	private Map<String, LatencyHistogram> tupleTypeToCpuTimeHistogram = new HashMap<>();
 	
 	public static TimeKeeper getInstance(){
 		if(instance == null)
@@ -46,9 +57,12 @@ public class TimeKeeper {
 	}
 	
 	public void tupleEndedExecution(Tuple tuple){
-		if(!tupleIdToCpuStartTime.containsKey(tuple.getCloudletId()))
+		Double startTime = Config.STREAMING_TIME_STATISTICS ? tupleIdToCpuStartTime.remove(tuple.getCloudletId())
+				: tupleIdToCpuStartTime.get(tuple.getCloudletId());
+		if(startTime == null)
 			return;
-		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.get(tuple.getCloudletId());
+		double executionTime = CloudSim.clock() - startTime;
+		getHistogram(tupleTypeToCpuTimeHistogram, tuple.getTupleType()).record(executionTime);
 		if(!tupleTypeToAverageCpuTime.containsKey(tuple.getTupleType())){
 			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), executionTime);
 			tupleTypeToExecutedTupleCount.put(tuple.getTupleType(), 1);
@@ -59,20 +73,126 @@ public class TimeKeeper {
 		}
 	}
 	
+	/**
+	 * Records that a tuple starting the given application loop was emitted at the current time.
+	 * In streaming mode (see {@link Config#STREAMING_TIME_STATISTICS}) the tuple id is not kept in
+	 * {@link #getLoopIdToTupleIds()}, whose lists then stay empty, and the emission times of the
+	 * tuples emitted more than {@link Config#LOOP_TUPLE_MAX_AGE} ago are forgotten: such tuples were
+	 * dropped, or filtered out by the selectivity of a module on the loop, and the delay of any of
+	 * them still reaching the end of the loop is not recorded.
+	 */
+	public void loopTupleEmitted(int loopId, int tupleId){
+		LoopRecorder recorder = getLoopRecorder(loopId);
+		if(recorder.tupleIds == null){
+			recorder.tupleIds = new ArrayList<Integer>();
+			loopIdToTupleIds.put(loopId, recorder.tupleIds);
+		}
+		if(!Config.STREAMING_TIME_STATISTICS)
+			recorder.tupleIds.add(tupleId);
+		else
+			evictEmitTimes(tupleId, CloudSim.clock());
+		emitTimes.put(tupleId, CloudSim.clock());
+	}
+
+	/**
+	 * Forgets the emission times older than {@link Config#LOOP_TUPLE_MAX_AGE}, then queues the given one.
+	 */
+	private void evictEmitTimes(int tupleId, double now){
+		while(emitQueueSize > 0 && now - emitQueueTimes[emitQueueHead] > Config.LOOP_TUPLE_MAX_AGE){
+			int oldId = emitQueueIds[emitQueueHead];
+			// the tuple may have completed its loop already, or been emitted again since
+			if(emitTimes.get(oldId) == emitQueueTimes[emitQueueHead])
+				emitTimes.remove(oldId);
+			emitQueueHead = (emitQueueHead + 1) % emitQueueIds.length;
+			emitQueueSize--;
+		}
+		if(emitQueueSize == emitQueueIds.length){
+			int capacity = emitQueueIds.length * 2;
+			int[] ids = new int[capacity];
+			double[] times = new double[capacity];
+			for(int i = 0; i < emitQueueSize; i++){
+				ids[i] = emitQueueIds[(emitQueueHead + i) % emitQueueIds.length];
+				times[i] = emitQueueTimes[(emitQueueHead + i) % emitQueueIds.length];
+			}
+			emitQueueIds = ids;
+			emitQueueTimes = times;
+			emitQueueHead = 0;
+		}
+		int tail = (emitQueueHead + emitQueueSize) % emitQueueIds.length;
+		emitQueueIds[tail] = tupleId;
+		emitQueueTimes[tail] = now;
+		emitQueueSize++;
+	}
+
+	/**
+	 * Records that a tuple reached the end of the given application loop at the current time, and
+	 * forgets its emission time.
+	 *
+	 * @return false if the emission time of the tuple is unknown
+	 */
+	public boolean loopTupleReceived(int loopId, int tupleId){
+		double startTime = emitTimes.remove(tupleId);
+		if(Double.isNaN(startTime))
+			return false;
+		LoopRecorder recorder = getLoopRecorder(loopId);
+		double delay = CloudSim.clock() - startTime;
+		recorder.average = (recorder.average*recorder.count + delay)/(recorder.count+1);
+		recorder.count++;
+		if(recorder.histogram == null)
+			recorder.histogram = getHistogram(loopIdToLatencyHistogram, loopId);
+		recorder.histogram.record(delay);
+		return true;
+	}
+
+	private LoopRecorder getLoopRecorder(int loopId){
+		Integer index = loopIndexes.get(loopId);
+		if(index != null)
+			return loopRecorders[index];
+		if(loopCount == loopRecorders.length)
+			loopRecorders = Arrays.copyOf(loopRecorders, loopCount * 2);
+		LoopRecorder recorder = new LoopRecorder(loopId);
+		loopRecorders[loopCount] = recorder;
+		loopIndexes.put(loopId, loopCount);
+		loopCount++;
+		return recorder;
+	}
+
+	/**
+	 * Delay statistics of an application loop, in primitive fields so that recording a tuple does
+	 * not box anything.
+	 */
+	private static class LoopRecorder {
+		private final int loopId;
+		private int count;
+		private double average;
+		private LatencyHistogram histogram;
+		private List<Integer> tupleIds; // the list of loopIdToTupleIds, once a tuple was emitted
+
+		LoopRecorder(int loopId){
+			this.loopId = loopId;
+		}
+	}
+
+	private static <K> LatencyHistogram getHistogram(Map<K, LatencyHistogram> histograms, K key){
+		LatencyHistogram histogram = histograms.get(key);
+		if(histogram == null){
+			histogram = new LatencyHistogram();
+			histograms.put(key, histogram);
+		}
+		return histogram;
+	}
+
 	public Map<Integer, List<Integer>> loopIdToTupleIds(){
 		return getInstance().getLoopIdToTupleIds();
 	}
 	
 	private TimeKeeper(){
 		count = 1;
-		setEmitTimes(new HashMap<Integer, Double>());
-		setEndTimes(new HashMap<Integer, Double>());
+		emitTimes = new IntDoubleMap();
 		setLoopIdToTupleIds(new HashMap<Integer, List<Integer>>());
 		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
 		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
 		setTupleIdToCpuStartTime(new HashMap<Integer, Double>());
-		setLoopIdToCurrentAverage(new HashMap<Integer, Double>());
-		setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
 	}
 	
 	public int getCount() {
@@ -83,20 +203,18 @@ public class TimeKeeper {
 		this.count = count;
 	}
 
+	/**
+	 * @return a copy of the emission times of the loop tuples that did not reach the end of their loop yet
+	 */
 	public Map<Integer, Double> getEmitTimes() {
-		return emitTimes;
-	}
-
-	public void setEmitTimes(Map<Integer, Double> emitTimes) {
-		this.emitTimes = emitTimes;
-	}
-
-	public Map<Integer, Double> getEndTimes() {
-		return endTimes;
-	}
-
-	public void setEndTimes(Map<Integer, Double> endTimes) {
-		this.endTimes = endTimes;
+		final Map<Integer, Double> result = new HashMap<Integer, Double>();
+		emitTimes.forEach(new IntDoubleMap.Consumer() {
+			@Override
+			public void accept(int tupleId, double emitTime) {
+				result.put(tupleId, emitTime);
+			}
+		});
+		return result;
 	}
 
 	public Map<Integer, List<Integer>> getLoopIdToTupleIds() {
@@ -141,20 +259,36 @@ public class TimeKeeper {
 		this.simulationStartTime = simulationStartTime;
 	}
 
+	/**
+	 * @return a copy of the average delay of the loops for which a tuple reached the end of the loop
+	 */
 	public Map<Integer, Double> getLoopIdToCurrentAverage() {
-		return loopIdToCurrentAverage;
+		Map<Integer, Double> result = new HashMap<Integer, Double>();
+		for(int i = 0; i < loopCount; i++){
+			if(loopRecorders[i].count > 0)
+				result.put(loopRecorders[i].loopId, loopRecorders[i].average);
+		}
+		return result;
 	}
 
-	public void setLoopIdToCurrentAverage(Map<Integer, Double> loopIdToCurrentAverage) {
-		this.loopIdToCurrentAverage = loopIdToCurrentAverage;
+	/**
+	 * @return a copy of the number of tuples that reached the end of each loop, for the loops with at least one
+	 */
+	public Map<Integer, Integer> getLoopIdToCurrentNum() {
+		Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+		for(int i = 0; i < loopCount; i++){
+			if(loopRecorders[i].count > 0)
+				result.put(loopRecorders[i].loopId, loopRecorders[i].count);
+		}
+		return result;
 	}
 
-	public Map<Integer, Integer> getLoopIdToCurrentNum() {
-		return loopIdToCurrentNum;
+	public Map<Integer, LatencyHistogram> getLoopIdToLatencyHistogram() {
+		return loopIdToLatencyHistogram;
 	}
 
-	public void setLoopIdToCurrentNum(Map<Integer, Integer> loopIdToCurrentNum) {
-		this.loopIdToCurrentNum = loopIdToCurrentNum;
+	public Map<String, LatencyHistogram> getTupleTypeToCpuTimeHistogram() {
+		return tupleTypeToCpuTimeHistogram;
 	}
 
 	public Map<Integer, Integer> getLoopIdToLatencyQoSSuccessCount() {